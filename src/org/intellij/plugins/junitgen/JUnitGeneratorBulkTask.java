@@ -0,0 +1,434 @@
+package org.intellij.plugins.junitgen;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ContentIterator;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.wm.StatusBar;
+import com.intellij.openapi.wm.WindowManager;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiManager;
+import org.intellij.plugins.junitgen.bean.JUnitGeneratorSettingsSnapshot;
+import org.intellij.plugins.junitgen.output.WriteBatch;
+import org.intellij.plugins.junitgen.stats.GenerationRun;
+import org.intellij.plugins.junitgen.stats.GenerationStatistics;
+import org.intellij.plugins.junitgen.template.CompiledTemplate;
+import org.intellij.plugins.junitgen.template.TemplateEngineManager;
+import org.intellij.plugins.junitgen.util.JUnitGeneratorUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates the tests for every class under a set of files, directories and source roots. The classes
+ * are analyzed and rendered in parallel by a pool with one thread per core, each class in its own read
+ * action. The files are created at the end in {@link WriteBatch}es of a bounded size.
+ * <p>Tests that already exist are left alone; nobody wants to answer a merge dialog per class when
+ * generating for a whole module.</p>
+ *
+ * @author agent
+ * @since 10/17/26 7:17 PM
+ */
+public class JUnitGeneratorBulkTask extends Task.Backgroundable {
+
+    private static final Logger log = JUnitGeneratorUtil.getLogger(JUnitGeneratorBulkTask.class);
+    /**
+     * set this system property to true to render with the template compiled to Java, off by default
+     */
+    private static final String COMPILED_RENDERER_PROPERTY = "junitgenerator.compiledRenderer";
+    /**
+     * how long we wait for the workers to notice they were cancelled, they check between classes
+     */
+    private static final int SHUTDOWN_TIMEOUT_SECONDS = 10;
+    /**
+     * the number of files created in one write action, so a large run doesn't freeze the IDE in one
+     * long write or fill up undo
+     */
+    private static final int WRITE_BATCH_SIZE = 50;
+    /**
+     * the number of rendered tests that may wait for their batch to be written, the workers wait when
+     * the write stage falls behind so the sinks of a large run don't pile up
+     */
+    private static final int MAX_PENDING_RESULTS = 2 * WRITE_BATCH_SIZE;
+
+    private final Collection<VirtualFile> roots;
+    private final JUnitGeneratorSettingsSnapshot settings;
+    private final String templateKey;
+    private final GenerationRun run;
+    private final List<JUnitGeneratorResult> results =
+            Collections.synchronizedList(new ArrayList<JUnitGeneratorResult>());
+    private final Semaphore pendingResults = new Semaphore(MAX_PENDING_RESULTS);
+    private final AtomicInteger renderedCount = new AtomicInteger();
+    private int classCount;
+    private int createdCount;
+    private int existingCount;
+    private volatile ExecutorService pool;
+    /**
+     * set once the task was cancelled, a worker that still comes back with a result releases it itself
+     */
+    private boolean closed;
+
+    public JUnitGeneratorBulkTask(Project project, Collection<VirtualFile> roots,
+                                  JUnitGeneratorSettingsSnapshot settings, String templateKey) {
+        super(project, "Generating JUnit Tests", true);
+        this.roots = roots;
+        this.settings = settings;
+        this.templateKey = templateKey;
+        this.run = new GenerationRun(templateKey, roots.size() == 1 ? roots.iterator().next().getName() :
+                roots.size() + " selections");
+    }
+
+    /**
+     * The background stage: find the classes, then analyze and render them in parallel
+     *
+     * @param indicator the progress indicator
+     */
+    @Override
+    public void run(@NotNull final ProgressIndicator indicator) {
+        final CompiledTemplate template;
+        try {
+            template = TemplateEngineManager.getInstance().getTemplate(this.settings.getVmTemplates(), this.templateKey);
+        } catch (Exception e) {
+            log.error(e);
+            return;
+        }
+        indicator.setText("Looking for classes");
+        final List<ClassTarget> targets = findClasses();
+        this.classCount = targets.size();
+        if (targets.isEmpty()) {
+            return;
+        }
+
+        //the same template renders every class, so compiling it to Java pays off here, once it is asked for
+        final JUnitGeneratorWorker worker = new JUnitGeneratorWorker(myProject, this.settings, template,
+                this.run, Boolean.getBoolean(COMPILED_RENDERER_PROPERTY));
+        final int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), targets.size()));
+        final ExecutorService pool = Executors.newFixedThreadPool(threads, new WorkerThreadFactory());
+        this.pool = pool;
+        final AtomicInteger done = new AtomicInteger();
+        final long start = System.nanoTime();
+        indicator.setIndeterminate(false);
+        indicator.setText(String.format("Generating tests for %d classes on %d threads", targets.size(), threads));
+        try {
+            final List<Future<?>> futures = new ArrayList<Future<?>>(targets.size());
+            for (final ClassTarget target : targets) {
+                futures.add(pool.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        awaitPendingResult(indicator);
+                        final boolean[] kept = new boolean[1];
+                        try {
+                            //bind our indicator so cancelling the task stops the workers too. Unlike runProcess
+                            //this doesn't start or stop it, which would end the progress for the workers still running
+                            ProgressManager.getInstance().executeProcessUnderProgress(new Runnable() {
+                                @Override
+                                public void run() {
+                                    indicator.checkCanceled();
+                                    final JUnitGeneratorResult result = worker.generate(target.file, target.psiClass);
+                                    if (result != null) {
+                                        kept[0] = accept(result);
+                                        if (!kept[0]) {
+                                            result.getOutput().release();
+                                        }
+                                    }
+                                }
+                            }, indicator);
+                        } finally {
+                            if (!kept[0]) {
+                                pendingResults.release();
+                            }
+                        }
+                        reportProgress(indicator, done.incrementAndGet(), targets.size(), start);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                waitFor(future, indicator);
+            }
+        } finally {
+            shutdown(pool);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Rendered %d of %d classes in %d ms", this.renderedCount.get(), targets.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+        }
+    }
+
+    /**
+     * The write stage for what is left once rendering is done. Full batches were already handed over while
+     * the workers were running. The new files are created {@link #WRITE_BATCH_SIZE} at a time, each batch
+     * in a write action and a refresh of its own.
+     */
+    @Override
+    public void onSuccess() {
+        final List<JUnitGeneratorResult> pending;
+        synchronized (this.results) {
+            pending = new ArrayList<JUnitGeneratorResult>(this.results);
+            this.results.clear();
+        }
+        writeBatch(pending, 0);
+    }
+
+    /**
+     * Create the files of one batch, then let the event queue breathe before the next one
+     *
+     * @param pending the rendered tests
+     * @param from    the index of the first test of this batch
+     */
+    private void writeBatch(final List<JUnitGeneratorResult> pending, final int from) {
+        final int to = Math.min(pending.size(), from + WRITE_BATCH_SIZE);
+        write(pending.subList(from, to));
+        if (to < pending.size()) {
+            ApplicationManager.getApplication().invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    writeBatch(pending, to);
+                }
+            });
+        } else {
+            finished();
+        }
+    }
+
+    /**
+     * Create the files of one batch and release all of its sinks. Must be called on the event dispatch thread.
+     *
+     * @param batchResults the rendered tests of the batch
+     */
+    private void write(List<JUnitGeneratorResult> batchResults) {
+        try {
+            if (myProject.isDisposed()) {
+                for (JUnitGeneratorResult result : batchResults) {
+                    result.getOutput().release();
+                }
+                return;
+            }
+            final WriteBatch batch = new WriteBatch();
+            batch.addAll(batchResults);
+            batch.write(this);
+            //existing tests are left alone in a bulk run
+            for (WriteBatch.Existing existing : batch.getExisting()) {
+                existing.getResult().getOutput().release();
+            }
+            this.createdCount += batch.getCreated().size();
+            this.existingCount += batch.getExisting().size();
+        } finally {
+            this.pendingResults.release(batchResults.size());
+        }
+    }
+
+    private void finished() {
+        GenerationStatistics.getInstance().record(this.run);
+        final String message = String.format("JUnit Generator: created %d tests for %d classes in %.1f s, %d already existed",
+                this.createdCount, this.classCount, this.run.getTotalNanos() / 1e9, this.existingCount);
+        log.info(message);
+        final StatusBar statusBar = WindowManager.getInstance().getStatusBar(myProject);
+        if (statusBar != null) {
+            statusBar.setInfo(message);
+        }
+    }
+
+    @Override
+    public void onCancel() {
+        if (this.pool != null) {
+            shutdown(this.pool);
+        }
+        synchronized (this.results) {
+            this.closed = true;
+            for (JUnitGeneratorResult result : this.results) {
+                result.getOutput().release();
+            }
+            this.results.clear();
+        }
+        log.debug("Bulk generation was cancelled");
+    }
+
+    /**
+     * Keep the result of a worker for the write stage, handing the results over as soon as a batch is full
+     *
+     * @param result the rendered test
+     * @return false if the task was cancelled and the result isn't wanted anymore
+     */
+    private boolean accept(JUnitGeneratorResult result) {
+        final List<JUnitGeneratorResult> full;
+        synchronized (this.results) {
+            if (this.closed) {
+                return false;
+            }
+            this.renderedCount.incrementAndGet();
+            this.results.add(result);
+            if (this.results.size() < WRITE_BATCH_SIZE) {
+                return true;
+            }
+            full = new ArrayList<JUnitGeneratorResult>(this.results);
+            this.results.clear();
+        }
+        //write the batch while the workers go on, so its sinks are released long before the run ends
+        ApplicationManager.getApplication().invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                write(full);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Wait until a rendered test may be added without going over {@link #MAX_PENDING_RESULTS}
+     *
+     * @param indicator the indicator
+     */
+    private void awaitPendingResult(ProgressIndicator indicator) {
+        try {
+            while (!this.pendingResults.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+                indicator.checkCanceled();
+            }
+        } catch (InterruptedException e) {
+            throw new ProcessCanceledException();
+        }
+    }
+
+    /**
+     * Stop the workers and wait for the ones that are still busy
+     *
+     * @param pool the workers
+     */
+    private static void shutdown(ExecutorService pool) {
+        pool.shutdownNow();
+        try {
+            if (!pool.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("The JUnit Generator workers did not stop in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Collect the top level classes of the java source files under the roots. Test sources are skipped,
+     * we don't generate tests for tests.
+     *
+     * @return the classes
+     */
+    private List<ClassTarget> findClasses() {
+        return ApplicationManager.getApplication().runReadAction(new Computable<List<ClassTarget>>() {
+            @Override
+            public List<ClassTarget> compute() {
+                final ProjectFileIndex fileIndex = ProjectRootManager.getInstance(myProject).getFileIndex();
+                final PsiManager psiManager = PsiManager.getInstance(myProject);
+                final Set<VirtualFile> files = new LinkedHashSet<VirtualFile>();
+                for (VirtualFile root : roots) {
+                    if (!root.isValid()) {
+                        continue;
+                    }
+                    fileIndex.iterateContentUnderDirectory(root, new ContentIterator() {
+                        @Override
+                        public boolean processFile(VirtualFile file) {
+                            if (!file.isDirectory() && fileIndex.isInSourceContent(file) &&
+                                    !fileIndex.isInTestSourceContent(file)) {
+                                files.add(file);
+                            }
+                            return true;
+                        }
+                    });
+                }
+                final List<ClassTarget> targets = new ArrayList<ClassTarget>();
+                for (VirtualFile file : files) {
+                    final PsiFile psiFile = psiManager.findFile(file);
+                    if (psiFile instanceof PsiJavaFile) {
+                        for (PsiClass psiClass : ((PsiJavaFile) psiFile).getClasses()) {
+                            targets.add(new ClassTarget((PsiJavaFile) psiFile, psiClass));
+                        }
+                    }
+                }
+                return targets;
+            }
+        });
+    }
+
+    /**
+     * Wait for the worker while keeping an eye on the indicator
+     *
+     * @param future    the worker
+     * @param indicator the indicator
+     */
+    private static void waitFor(Future<?> future, ProgressIndicator indicator) {
+        while (true) {
+            indicator.checkCanceled();
+            try {
+                future.get(100, TimeUnit.MILLISECONDS);
+                return;
+            } catch (TimeoutException e) {
+                //check again
+            } catch (InterruptedException e) {
+                throw new ProcessCanceledException();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof ProcessCanceledException) {
+                    throw (ProcessCanceledException) e.getCause();
+                }
+                log.error(e.getCause());
+                return;
+            }
+        }
+    }
+
+    private static void reportProgress(ProgressIndicator indicator, int done, int total, long start) {
+        final double seconds = (System.nanoTime() - start) / 1e9;
+        indicator.setFraction((double) done / total);
+        indicator.setText2(String.format("%d of %d classes, %.1f classes/s", done, total,
+                seconds > 0 ? done / seconds : 0d));
+    }
+
+    /**
+     * A class and the file it lives in
+     */
+    private static class ClassTarget {
+        private final PsiJavaFile file;
+        private final PsiClass psiClass;
+
+        ClassTarget(PsiJavaFile file, PsiClass psiClass) {
+            this.file = file;
+            this.psiClass = psiClass;
+        }
+    }
+
+    /**
+     * Names the worker threads so they are easy to spot in a thread dump
+     */
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@NotNull Runnable runnable) {
+            final Thread thread = new Thread(runnable, "JUnitGenerator worker " + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
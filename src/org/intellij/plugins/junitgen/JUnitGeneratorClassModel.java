@@ -0,0 +1,106 @@
+package org.intellij.plugins.junitgen;
+
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiModifier;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The methods of a class and its inner classes, collected in a single pass over the PSI. The
+ * getters and setters are indexed by property name as they are collected, so combining them later is a
+ * lookup instead of another scan of the methods.
+ *
+ * @author agent
+ * @since 10/17/26 7:11 PM
+ */
+public class JUnitGeneratorClassModel {
+
+    static final Pattern ISGETSET = Pattern.compile("^(is|get|set)(.*)");
+
+    private static final int GETTER = 1;
+    private static final int SETTER = 2;
+
+    private final List<PsiMethod> methods = new ArrayList<PsiMethod>();
+    private final List<PsiMethod> privateMethods = new ArrayList<PsiMethod>();
+    private final Map<String, Integer> accessors = new HashMap<String, Integer>();
+    private final Map<String, Integer> privateAccessors = new HashMap<String, Integer>();
+
+    private final boolean includePrivate;
+
+    private JUnitGeneratorClassModel(boolean includePrivate) {
+        this.includePrivate = includePrivate;
+    }
+
+    /**
+     * Collect the model for the class. Must be called inside a read action.
+     *
+     * @param psiClass       the class
+     * @param includePrivate false to leave the private methods out
+     * @return the model
+     */
+    public static JUnitGeneratorClassModel build(PsiClass psiClass, boolean includePrivate) {
+        final JUnitGeneratorClassModel model = new JUnitGeneratorClassModel(includePrivate);
+        model.collect(psiClass);
+        for (PsiClass innerClass : psiClass.getAllInnerClasses()) {
+            model.collect(innerClass);
+        }
+        return model;
+    }
+
+    /**
+     * The non-private or the private methods, in declaration order
+     *
+     * @param getPrivate true for the private methods
+     * @return the methods
+     */
+    public List<PsiMethod> getMethods(boolean getPrivate) {
+        return getPrivate ? this.privateMethods : this.methods;
+    }
+
+    /**
+     * If the method is a getter or setter and the same list also holds its counterpart, return the
+     * combined name "GetSet&lt;BaseName&gt;". Otherwise the name comes back as it was.
+     *
+     * @param methodName the name of the method
+     * @param getPrivate true to look at the private methods
+     * @return the combined name or the method name
+     */
+    public String getCombinedAccessorName(String methodName, boolean getPrivate) {
+        final Matcher matcher = ISGETSET.matcher(methodName);
+        if (matcher.find()) {
+            final Integer kinds = (getPrivate ? this.privateAccessors : this.accessors).get(matcher.group(2));
+            if (kinds != null && kinds == (GETTER | SETTER)) {
+                return "GetSet" + matcher.group(2);
+            }
+        }
+        return methodName;
+    }
+
+    private void collect(PsiClass psiClass) {
+        for (PsiMethod method : psiClass.getMethods()) {
+            if (!method.isConstructor()) {
+                final boolean isPrivate = method.getModifierList().hasModifierProperty(PsiModifier.PRIVATE);
+                if (isPrivate && !this.includePrivate) {
+                    continue;
+                }
+                (isPrivate ? this.privateMethods : this.methods).add(method);
+                index(method.getName(), isPrivate ? this.privateAccessors : this.accessors);
+            }
+        }
+    }
+
+    private static void index(String methodName, Map<String, Integer> index) {
+        final Matcher matcher = ISGETSET.matcher(methodName);
+        if (matcher.find()) {
+            final int kind = "set".equals(matcher.group(1)) ? SETTER : GETTER;
+            final Integer kinds = index.get(matcher.group(2));
+            index.put(matcher.group(2), kinds == null ? kind : kinds | kind);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package org.intellij.plugins.junitgen;
+
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.util.PsiModificationTracker;
+import org.intellij.plugins.junitgen.bean.MethodComposite;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the composites built for super methods. Many classes override the same framework methods,
+ * and both {@link PsiMethod#findSuperMethods()} and the composites of the ancestors are expensive, so we
+ * share them between the classes of a run and between runs. Everything is dropped as soon as the PSI
+ * changes outside of a code block, which is where signatures and hierarchies change.
+ * <p>The cached composites leave out the class name, which only the reflection code depends on. The class
+ * being generated gets its own composites from {@link MethodComposite#forClass(String)} when it reads
+ * them. Only the most recently used entries are kept.</p>
+ *
+ * @author agent
+ * @since 10/17/26 7:11 PM
+ */
+public class JUnitGeneratorCompositeCache {
+
+    /**
+     * marks a method we already know has no super method
+     */
+    private static final MethodComposite NO_BASE = new MethodComposite();
+
+    /**
+     * the most entries kept in each map, enough for the methods of a large module
+     */
+    private static final int MAX_ENTRIES = 8192;
+
+    private final PsiModificationTracker tracker;
+    private long modificationCount = -1;
+    private final Map<PsiMethod, MethodComposite> bases = new BoundedMap();
+    private final Map<PsiMethod, MethodComposite> ancestors = new BoundedMap();
+
+    public JUnitGeneratorCompositeCache(Project project) {
+        this.tracker = PsiManager.getInstance(project).getModificationTracker();
+    }
+
+    /**
+     * Return the instance for the project
+     *
+     * @param project the project
+     * @return the cache
+     */
+    public static JUnitGeneratorCompositeCache getInstance(Project project) {
+        return ServiceManager.getService(project, JUnitGeneratorCompositeCache.class);
+    }
+
+    /**
+     * Return true if we know whether the method has a base, in which case
+     * {@link #getBase(PsiMethod)} has the answer
+     *
+     * @param method the method
+     * @return true if the base is known
+     */
+    public synchronized boolean isBaseKnown(PsiMethod method) {
+        validate();
+        return this.bases.containsKey(method);
+    }
+
+    /**
+     * The composite of the method's super method
+     *
+     * @param method the method
+     * @return the composite, or null if there is no super method or it is not known yet
+     */
+    public synchronized MethodComposite getBase(PsiMethod method) {
+        validate();
+        final MethodComposite base = this.bases.get(method);
+        return base == NO_BASE ? null : base;
+    }
+
+    public synchronized void putBase(PsiMethod method, MethodComposite base) {
+        validate();
+        this.bases.put(method, base == null ? NO_BASE : base);
+    }
+
+    /**
+     * The composite built for a method as the ancestor of another
+     *
+     * @param method the super method
+     * @return the composite or null
+     */
+    public synchronized MethodComposite getAncestor(PsiMethod method) {
+        validate();
+        return this.ancestors.get(method);
+    }
+
+    public synchronized void putAncestor(PsiMethod method, MethodComposite composite) {
+        validate();
+        this.ancestors.put(method, composite);
+    }
+
+    private void validate() {
+        final long count = this.tracker.getOutOfCodeBlockModificationCount();
+        if (count != this.modificationCount) {
+            this.bases.clear();
+            this.ancestors.clear();
+            this.modificationCount = count;
+        }
+    }
+
+    /**
+     * Forgets the least recently used entry once it is full
+     */
+    private static class BoundedMap extends LinkedHashMap<PsiMethod, MethodComposite> {
+
+        BoundedMap() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<PsiMethod, MethodComposite> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    }
+}
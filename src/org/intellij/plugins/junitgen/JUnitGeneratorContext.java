@@ -1,10 +1,10 @@
 package org.intellij.plugins.junitgen;
 
-import com.intellij.openapi.actionSystem.DataContext;
-import com.intellij.openapi.actionSystem.DataKeys;
 import com.intellij.openapi.project.Project;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiJavaFile;
+import org.intellij.plugins.junitgen.bean.JUnitGeneratorSettingsSnapshot;
+import org.intellij.plugins.junitgen.stats.GenerationRun;
 
 
 /**
@@ -15,18 +15,19 @@ import com.intellij.psi.PsiJavaFile;
  */
 public class JUnitGeneratorContext {
 
-    private final DataContext dataContext;
     private final PsiJavaFile file;
     private final PsiClass psiClass;
+    private final Project project;
+    private final JUnitGeneratorSettingsSnapshot settings;
+    private final GenerationRun run;
 
-    public JUnitGeneratorContext(DataContext ctx, PsiJavaFile file, PsiClass psiClass) {
-        this.dataContext = ctx;
+    public JUnitGeneratorContext(Project project, PsiJavaFile file, PsiClass psiClass,
+                                 JUnitGeneratorSettingsSnapshot settings, GenerationRun run) {
+        this.project = project;
         this.file = file;
         this.psiClass = psiClass;
-    }
-
-    public DataContext getDataContext() {
-        return dataContext;
+        this.settings = settings;
+        this.run = run;
     }
 
     public PsiJavaFile getFile() {
@@ -37,6 +38,24 @@ public class JUnitGeneratorContext {
         return psiClass;
     }
 
+    /**
+     * The settings taken when the generation started
+     *
+     * @return the settings snapshot
+     */
+    public JUnitGeneratorSettingsSnapshot getSettings() {
+        return settings;
+    }
+
+    /**
+     * The run the timings of this class are recorded in
+     *
+     * @return the generation run
+     */
+    public GenerationRun getRun() {
+        return run;
+    }
+
     public String getPackageName() {
         return this.file.getPackageName();
     }
@@ -55,6 +74,6 @@ public class JUnitGeneratorContext {
      * @return the project
      */
     public Project getProject() {
-        return DataKeys.PROJECT.getData(this.dataContext);
+        return this.project;
     }
 }
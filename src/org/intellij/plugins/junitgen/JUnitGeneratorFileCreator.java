@@ -1,28 +1,28 @@
 package org.intellij.plugins.junitgen;
 
-import com.intellij.openapi.actionSystem.DataContext;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.fileEditor.FileEditorManager;
-import com.intellij.openapi.vfs.VfsUtil;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.openapi.vfs.VirtualFileManager;
-import com.intellij.psi.PsiJavaFile;
 import org.intellij.plugins.junitgen.diff.DiffFileAction;
+import org.intellij.plugins.junitgen.diff.TestClassMerger;
+import org.intellij.plugins.junitgen.output.ContentHash;
+import org.intellij.plugins.junitgen.output.OutputSink;
+import org.intellij.plugins.junitgen.stats.GenerationPhase;
+import org.intellij.plugins.junitgen.stats.GenerationRun;
 import org.intellij.plugins.junitgen.util.JUnitGeneratorUtil;
 
 import javax.swing.*;
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.StringWriter;
 
 
 /**
- * Responsible for writing test case out to the file and bringing
- * new editor window up.
- * Must implement runnable since we are using Application.runWriteAction in
- * JUnitGeneratorAction to refresh the content of the VirtualFileSystem.
+ * Responsible for the test case whose file already exists: asks the user whether to add the
+ * missing test methods, look at the difference or overwrite it, then does what was asked. If the file already holds exactly
+ * what we generated there is nothing to ask and nothing happens. New files are created by the
+ * {@link org.intellij.plugins.junitgen.output.WriteBatch}.
+ * Runs on the event dispatch thread outside of a write action, so the dialogs don't hold the
+ * write lock; the overwrite takes its own write action.
  *
  * @author Alex Nazimok (SCI)
  * @author Jon Osborn
@@ -32,101 +32,94 @@ public class JUnitGeneratorFileCreator implements Runnable {
 
     private static final Logger log = JUnitGeneratorUtil.getLogger(JUnitGeneratorFileCreator.class);
 
-    private String outputFile;
-    private StringWriter writer;
-    private DataContext ctx;
-    private PsiJavaFile file;
-    private JUnitGeneratorContext genCtx;
+    /**
+     * the positions of the options in junit.generator.file.exists.options
+     */
+    private static final int MERGE_OPTION = 0;
+    private static final int DIFF_OPTION = 1;
+    private static final int OVERWRITE_OPTION = 2;
+
+    private final VirtualFile virtualFile;
+    private final OutputSink output;
+    private final JUnitGeneratorContext genCtx;
 
     /**
      * Default constructor
      *
-     * @param outputFile output file name
-     * @param writer     holds the content of the file
-     * @param genCtx     generator context
+     * @param virtualFile the existing test file
+     * @param output      holds the encoded content of the file
+     * @param genCtx      generator context
      */
-    public JUnitGeneratorFileCreator(String outputFile, StringWriter writer, JUnitGeneratorContext genCtx) {
-        this.outputFile = outputFile;
-        this.writer = writer;
-        this.ctx = genCtx.getDataContext();
-        this.file = genCtx.getFile();
+    public JUnitGeneratorFileCreator(VirtualFile virtualFile, OutputSink output, JUnitGeneratorContext genCtx) {
+        this.virtualFile = virtualFile;
+        this.output = output;
         this.genCtx = genCtx;
     }
 
     /**
-     * When an object implementing interface <code>Runnable</code> is used
-     * to create a thread, starting the thread causes the object's
-     * <code>run</code> method to be called in that separately executing
-     * thread.
-     * <p/>
-     * The general contract of the method <code>run</code> is that it may
-     * take any action whatsoever.
-     *
-     * @see java.lang.Thread#run()
+     * Prompt for the existing file, then merge the missing methods, show the difference or overwrite it
      */
     public void run() {
         try {
-            final VirtualFileManager manager = VirtualFileManager.getInstance();
-            VirtualFile virtualFile = manager.refreshAndFindFileByUrl(VfsUtil.pathToUrl(this.outputFile));
-            int overwriteInd = JOptionPane.NO_OPTION;
-
-            if (virtualFile != null && virtualFile.exists()) {
-                log.debug("file exists so prompt the user for merge request");
-                overwriteInd =
-                        JOptionPane.showOptionDialog(null,
-                                JUnitGeneratorUtil.getProperty("junit.generator.file.exists"),
-                                "View the difference?",
-                                JOptionPane.YES_NO_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE, null, null, null);
-                if (JOptionPane.NO_OPTION == overwriteInd) {
-                    //user chose to overwrite the file, so replace the virtual file contents
-                    virtualFile.setBinaryContent(writer.toString().getBytes());
+            if (ContentHash.isSameContent(this.virtualFile, this.output)) {
+                //nothing would change, so there is nothing to ask about
+                if (log.isDebugEnabled()) {
+                    log.debug(String.format("%s is up to date", this.virtualFile.getPath()));
                 }
-            } else {
-                //we need to create the file
-                final File newFile = new File(this.outputFile);
-                //create directories if required
-                if (!newFile.getParentFile().exists()) {
-                    if (newFile.getParentFile().mkdirs()) {
-                        log.debug("created directories");
-                    }
-                }
-                //user chose to overwrite
-                FileWriter w = null;
-                try {
-                    w = new FileWriter(newFile);
-                    w.write(this.writer.toString());
-                } catch (IOException e) {
-                    log.warn("Exception while logging the error", e);
-                } finally {
-                    if (w != null) {
-                        try {
-                            w.close();
-                        } catch (IOException e) {
-                            //ignore
-                        }
-                    }
-                }
-                log.info("Created File");
-                virtualFile = manager.refreshAndFindFileByUrl(VfsUtil.pathToUrl(this.outputFile));
+                return;
             }
-
-            final VirtualFile fileToOpen = virtualFile;
-            if (JOptionPane.NO_OPTION == overwriteInd && virtualFile != null) {
-                //now open the file
-                ApplicationManager.getApplication().invokeLater(new Runnable() {
-                    @Override
-                    public void run() {
-                        FileEditorManager.getInstance(genCtx.getProject()).openFile(fileToOpen, true, true);
-                    }
-                });
-            } else if (JOptionPane.YES_OPTION == overwriteInd) {
-                //user wants to merge, so create the files and we get them together
-                new DiffFileAction().showDiff(writer.toString(), fileToOpen, this.genCtx);
-            } else {
-                log.warn("Couldn't create the virtual file for some reason");
+            log.debug("file exists so prompt the user for merge request");
+            final String[] options = JUnitGeneratorUtil.getDelimitedProperty("junit.generator.file.exists.options", ",");
+            final int choice =
+                    JOptionPane.showOptionDialog(null,
+                            JUnitGeneratorUtil.getProperty("junit.generator.file.exists"),
+                            "Test already exists",
+                            JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE, null, options, options[0]);
+            if (MERGE_OPTION == choice) {
+                //add the test methods the existing test doesn't have, leave the rest alone
+                final int added = new TestClassMerger(this.genCtx.getProject())
+                        .merge(this.virtualFile, this.output.getText());
+                if (added < 0) {
+                    //nothing to merge into, so fall back to the difference
+                    new DiffFileAction().showDiff(this.output.getText(), this.virtualFile, this.genCtx);
+                } else {
+                    FileEditorManager.getInstance(this.genCtx.getProject()).openFile(this.virtualFile, true, true);
+                }
+            } else if (OVERWRITE_OPTION == choice) {
+                //user chose to overwrite the file, so replace the virtual file contents
+                overwrite();
+                FileEditorManager.getInstance(this.genCtx.getProject()).openFile(this.virtualFile, true, true);
+            } else if (DIFF_OPTION == choice) {
+                //user wants to merge by hand, so create the files and we get them together
+                new DiffFileAction().showDiff(this.output.getText(), this.virtualFile, this.genCtx);
             }
         } catch (Exception e) {
             log.error("Exception while attempting to create the JUnit file", e);
+        } finally {
+            this.output.release();
+        }
+    }
+
+    private void overwrite() throws IOException {
+        final IOException[] failure = new IOException[1];
+        final GenerationRun.Measurement measurement = this.genCtx.getRun().begin(GenerationPhase.WRITE);
+        try {
+            ApplicationManager.getApplication().runWriteAction(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        output.writeTo(virtualFile, JUnitGeneratorFileCreator.this);
+                        ContentHash.remember(virtualFile, output);
+                    } catch (IOException e) {
+                        failure[0] = e;
+                    }
+                }
+            });
+        } finally {
+            measurement.end();
+        }
+        if (failure[0] != null) {
+            throw failure[0];
         }
     }
 }
@@ -0,0 +1,289 @@
+package org.intellij.plugins.junitgen;
+
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.psi.*;
+import org.intellij.plugins.junitgen.bean.JUnitGeneratorSettingsSnapshot;
+import org.intellij.plugins.junitgen.bean.MethodComposite;
+import org.intellij.plugins.junitgen.bean.TemplateEntry;
+import org.intellij.plugins.junitgen.stats.GenerationPhase;
+import org.intellij.plugins.junitgen.stats.GenerationRun;
+import org.intellij.plugins.junitgen.template.TemplateRequirements;
+import org.intellij.plugins.junitgen.util.JUnitGeneratorUtil;
+
+import java.util.*;
+
+/**
+ * Dissects a class into the {@link TemplateEntry} the template is merged with. This walks the PSI, so it
+ * must be called inside a read action. It checks for cancellation between methods, so it is meant to run
+ * under a progress indicator.
+ * <p>Only the parts of the model the template uses are built, see {@link TemplateRequirements}.</p>
+ *
+ * @author Alex Nazimok (SCI)
+ * @author Jon Osborn
+ * @author By: Bryan Gilbert, July 18, 2008
+ * @author agent
+ * @since <pre>Sep 3, 2003</pre>
+ */
+public class JUnitGeneratorModelBuilder {
+
+    private final TemplateRequirements requirements;
+
+    public JUnitGeneratorModelBuilder(TemplateRequirements requirements) {
+        this.requirements = requirements;
+    }
+
+    /**
+     * Build the template entry for the class of the context
+     *
+     * @param genCtx the generator context
+     * @return the entry, or null if the class is an interface
+     */
+    public TemplateEntry build(JUnitGeneratorContext genCtx) {
+        final PsiClass psiClass = genCtx.getPsiClass();
+        if (psiClass.isInterface()) {
+            return null;
+        }
+        final GenerationRun run = genCtx.getRun();
+        boolean getPrivate = true;
+
+        List<MethodComposite> methodCompositeList = new ArrayList<MethodComposite>();
+        List<MethodComposite> privateMethodCompositeList = new ArrayList<MethodComposite>();
+
+        final JUnitGeneratorClassModel model;
+        GenerationRun.Measurement measurement = run.begin(GenerationPhase.SCAN);
+        try {
+            model = JUnitGeneratorClassModel.build(psiClass, this.requirements.isPrivateMethodsUsed());
+        } finally {
+            measurement.end();
+        }
+
+        measurement = run.begin(GenerationPhase.COMPOSITES);
+        try {
+            processMethods(genCtx, model, !getPrivate, methodCompositeList);
+            if (this.requirements.isPrivateMethodsUsed()) {
+                processMethods(genCtx, model, getPrivate, privateMethodCompositeList);
+            }
+        } finally {
+            measurement.end();
+        }
+
+        return new TemplateEntry(genCtx.getClassName(false),
+                genCtx.getPackageName(),
+                methodCompositeList,
+                privateMethodCompositeList,
+                this.requirements.isFieldsUsed() ? psiClass : null);
+    }
+
+    /**
+     * Creates a list of methods with set and get methods combined together.
+     *
+     * @param genCtx              the generator context
+     * @param model               the collected class model
+     * @param getPrivate          true to process the private methods
+     * @param methodCompositeList the composite list
+     */
+    private void processMethods(JUnitGeneratorContext genCtx, JUnitGeneratorClassModel model, boolean getPrivate,
+                                List<MethodComposite> methodCompositeList) {
+        final JUnitGeneratorSettingsSnapshot settings = genCtx.getSettings();
+        final Set<String> methodNames = new HashSet<String>();
+        final Map<String, List<MethodComposite>> overloadGroups = new HashMap<String, List<MethodComposite>>();
+
+        List<MethodComposite> methodComposites = toComposites(genCtx, model.getMethods(getPrivate), overloadGroups);
+
+        if (settings.isGenerateForOverloadedMethods()) {
+            methodComposites = updateOverloadedMethods(genCtx, methodComposites, overloadGroups);
+        }
+
+        final boolean combineGetterAndSetter = settings.isCombineGetterAndSetter();
+        for (MethodComposite method : methodComposites) {
+            String methodName = method.getName();
+
+            if (combineGetterAndSetter) {
+                methodName = model.getCombinedAccessorName(methodName, getPrivate);
+            }
+
+            if (methodNames.add(methodName)) {
+                method.setName(methodName);
+                methodCompositeList.add(method);
+            }
+        }
+    }
+
+    /**
+     * Create a MethodComposite object for each of the methods passed in. The methods are grouped by name
+     * as we go and every composite shares the group of its name as its overloaded methods.
+     *
+     * @param genCtx         the context
+     * @param methodList     the method list
+     * @param overloadGroups filled with the composites by method name
+     * @return the list of methods
+     */
+    private List<MethodComposite> toComposites(JUnitGeneratorContext genCtx, List<PsiMethod> methodList,
+                                               Map<String, List<MethodComposite>> overloadGroups) {
+
+        final List<MethodComposite> compositeList = new ArrayList<MethodComposite>(methodList.size());
+
+        for (PsiMethod method : methodList) {
+            //give the user a chance to cancel between methods
+            ProgressManager.checkCanceled();
+            final MethodComposite composite = toComposite(genCtx, method);
+            List<MethodComposite> group = overloadGroups.get(composite.getName());
+            if (group == null) {
+                group = new ArrayList<MethodComposite>(1);
+                overloadGroups.put(composite.getName(), group);
+            }
+            group.add(composite);
+            if (this.requirements.isOverloadedMethodsUsed()) {
+                composite.setOverloadedMethods(new OverloadedMethodList(group, group.size() - 1));
+            }
+            compositeList.add(composite);
+        }
+        return compositeList;
+    }
+
+    /**
+     * Generate the method composite class. The chain of super methods is looked up in the project cache
+     * and only built when the cache doesn't have it yet.
+     *
+     * @param genCtx the generator context
+     * @param method the method in question
+     * @return the method composite object
+     */
+    private MethodComposite toComposite(JUnitGeneratorContext genCtx, PsiMethod method) {
+        final String className = genCtx.getClassName(false);
+        final MethodComposite composite = createComposite(method, className);
+        if (this.requirements.isBaseUsed()) {
+            final JUnitGeneratorCompositeCache cache = JUnitGeneratorCompositeCache.getInstance(genCtx.getProject());
+            final MethodComposite base = findBase(cache, method);
+            //the cached chain is shared by all classes, the reflection code of ours names the class we generate
+            composite.setBase(base != null ? base.forClass(className) : null);
+        }
+        return composite;
+    }
+
+    /**
+     * Return the composite of the method's super method, recursing until we get to the top of the chain
+     *
+     * @param cache  the project cache
+     * @param method the method
+     * @return the shared base composite, without a class name, or null if the method doesn't override anything
+     */
+    private MethodComposite findBase(JUnitGeneratorCompositeCache cache, PsiMethod method) {
+        if (cache.isBaseKnown(method)) {
+            return cache.getBase(method);
+        }
+        MethodComposite base = null;
+        //if the super method is not the same as us, grab the data from that also
+        final PsiMethod[] superMethods = method.findSuperMethods();
+        if (superMethods.length > 0) {
+            final PsiMethod superMethod = superMethods[0];
+            base = cache.getAncestor(superMethod);
+            if (base == null) {
+                base = createComposite(superMethod, null);
+                base.setBase(findBase(cache, superMethod));
+                cache.putAncestor(superMethod, base);
+            }
+        }
+        cache.putBase(method, base);
+        return base;
+    }
+
+    /**
+     * Create the composite. Everything other than the name is computed when the template asks for it.
+     *
+     * @param method    the method
+     * @param className the class name for the reflection code
+     * @return the composite
+     */
+    private MethodComposite createComposite(PsiMethod method, String className) {
+        //create the composite object to send to the template
+        final MethodComposite composite = new MethodComposite();
+        composite.setMethod(method);
+        composite.setName(method.getName());
+        composite.setReflectionClassName(className);
+        return composite;
+    }
+
+    private List<MethodComposite> updateOverloadedMethods(JUnitGeneratorContext context, List<MethodComposite> methodList,
+                                                          Map<String, List<MethodComposite>> overloadGroups) {
+
+        //the first method of an overloaded name is numbered with the size of its group, counting down from there
+        final Map<String, Integer> remaining = new HashMap<String, Integer>();
+
+        for (int i = 0; i < methodList.size(); i++) {
+
+            MethodComposite method = methodList.get(i);
+            String methodName = method.getName();
+            final List<MethodComposite> group = overloadGroups.get(methodName);
+            if (group != null && group.size() > 1) {
+                Integer count = remaining.get(methodName);
+                if (count == null) {
+                    count = group.size();
+                }
+                remaining.put(methodName, count - 1);
+                methodList.set(i, mutateOverloadedMethodName(context, method, count));
+            }
+        }
+
+        return methodList;
+    }
+
+    private MethodComposite mutateOverloadedMethodName(JUnitGeneratorContext context, MethodComposite method, int count) {
+
+        String stringToAppend = "";
+        final String overloadType = context.getSettings().getListOverloadedMethodsBy();
+
+        if (JUnitGeneratorUtil.NUMBER.equalsIgnoreCase(overloadType)) {
+            stringToAppend += count;
+        } else if (JUnitGeneratorUtil.PARAM_CLASS.equalsIgnoreCase(overloadType)) {
+
+            if (method.getParamClasses().size() > 1) {
+                stringToAppend += "For";
+            }
+
+            for (String paramClass : method.getParamClasses()) {
+                paramClass = paramClass.substring(0, 1).toUpperCase() + paramClass.substring(1, paramClass.length());
+                stringToAppend += paramClass;
+            }
+        } else if (JUnitGeneratorUtil.PARAM_NAME.equalsIgnoreCase(overloadType)) {
+
+            if (method.getParamNames().size() > 1) {
+                stringToAppend += "For";
+            }
+
+            for (String paramName : method.getParamNames()) {
+                paramName = paramName.substring(0, 1).toUpperCase() + paramName.substring(1, paramName.length());
+                stringToAppend += paramName;
+            }
+        }
+
+        method.setName(method.getName() + stringToAppend);
+
+        return method;
+    }
+
+    /**
+     * The overloaded methods of a composite: every other member of its name group. The group itself is
+     * shared by all of its members, so this view doesn't copy it.
+     */
+    private static class OverloadedMethodList extends AbstractList<MethodComposite> {
+
+        private final List<MethodComposite> group;
+        private final int selfIndex;
+
+        OverloadedMethodList(List<MethodComposite> group, int selfIndex) {
+            this.group = group;
+            this.selfIndex = selfIndex;
+        }
+
+        @Override
+        public MethodComposite get(int index) {
+            return this.group.get(index < this.selfIndex ? index : index + 1);
+        }
+
+        @Override
+        public int size() {
+            return this.group.size() - 1;
+        }
+    }
+}
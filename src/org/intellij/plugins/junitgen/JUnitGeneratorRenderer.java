@@ -0,0 +1,210 @@
+package org.intellij.plugins.junitgen;
+
+import org.apache.velocity.Template;
+import org.apache.velocity.VelocityContext;
+import org.intellij.plugins.junitgen.bean.TemplateEntry;
+import org.intellij.plugins.junitgen.output.OutputSink;
+import org.intellij.plugins.junitgen.output.OutputSplitter;
+import org.intellij.plugins.junitgen.output.PooledOutputSink;
+import org.intellij.plugins.junitgen.stats.GenerationPhase;
+import org.intellij.plugins.junitgen.stats.GenerationRun;
+import org.intellij.plugins.junitgen.template.CompiledRenderer;
+import org.intellij.plugins.junitgen.template.CompiledTemplate;
+import org.intellij.plugins.junitgen.template.TemplateEngineManager;
+import org.intellij.plugins.junitgen.template.TemplateProfiler;
+import org.intellij.plugins.junitgen.util.DateTool;
+import org.intellij.plugins.junitgen.util.JUnitGeneratorUtil;
+import org.intellij.plugins.junitgen.util.StringTool;
+
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Merges the template with the entries and works out where the result goes. The model may still be
+ * read lazily from the PSI while merging, so this runs inside the same read action that built it.
+ *
+ * @author Alex Nazimok (SCI)
+ * @author Jon Osborn
+ * @author agent
+ * @since <pre>Sep 3, 2003</pre>
+ */
+public class JUnitGeneratorRenderer {
+
+    /**
+     * shared by every render so the names it has seen stay cached
+     */
+    private static final StringTool STRING_TOOL = new StringTool();
+
+    private final CompiledTemplate compiledTemplate;
+    private final boolean useCompiledRenderer;
+
+    public JUnitGeneratorRenderer(CompiledTemplate compiledTemplate) {
+        this(compiledTemplate, false);
+    }
+
+    /**
+     * Create the renderer
+     *
+     * @param compiledTemplate    the template
+     * @param useCompiledRenderer true to render with the template compiled to Java when it can be
+     */
+    public JUnitGeneratorRenderer(CompiledTemplate compiledTemplate, boolean useCompiledRenderer) {
+        this.compiledTemplate = compiledTemplate;
+        this.useCompiledRenderer = useCompiledRenderer;
+    }
+
+    /**
+     * Sets all the needed vars in VelocityContext and
+     * merges the template
+     *
+     * @param genCtx    the context
+     * @param entryList the list of entries to go into velocity scope
+     * @return the rendered test
+     * @throws Exception when the template can't be merged or the output can't be placed
+     */
+    public JUnitGeneratorResult render(JUnitGeneratorContext genCtx, List<TemplateEntry> entryList) throws Exception {
+        //encode straight into the charset the test will be written with
+        final OutputSink output = new PooledOutputSink(JUnitGeneratorUtil.getOutputCharset(genCtx));
+
+        final VelocityContext context;
+        GenerationRun.Measurement measurement = genCtx.getRun().begin(GenerationPhase.RENDER);
+        try {
+            context = merge(entryList, output.getWriter());
+        } catch (Exception e) {
+            output.release();
+            throw e;
+        } finally {
+            measurement.end();
+        }
+        String outputFileName = (String) context.get("testClass");
+        if (outputFileName == null || outputFileName.trim().length() == 0) {
+            if (entryList != null && entryList.size() > 0) {
+                outputFileName = entryList.get(0).getClassName() + "Test";
+            } else {
+                outputFileName = "UnknownTestCaseNameTest";
+            }
+        }
+        return place(genCtx, outputFileName, output);
+    }
+
+    /**
+     * Merge the template once with the entries of several classes and cut the output into one test per
+     * entry where the template marks them with <code>$boundary.begin($testClass)</code>
+     *
+     * @param contexts  the contexts, one per entry and in the same order
+     * @param entryList the list of entries to go into velocity scope
+     * @return the rendered tests in the order of the entries, or null if the template didn't mark exactly
+     *         one test per entry
+     * @throws Exception when the template can't be merged or the output can't be placed
+     */
+    public List<JUnitGeneratorResult> renderAll(List<JUnitGeneratorContext> contexts,
+                                                List<TemplateEntry> entryList) throws Exception {
+        //each test is encoded straight into its own sink as the merge crosses its mark
+        final List<Charset> charsets = new ArrayList<Charset>(contexts.size());
+        for (JUnitGeneratorContext genCtx : contexts) {
+            charsets.add(JUnitGeneratorUtil.getOutputCharset(genCtx));
+        }
+        final OutputSplitter splitter = new OutputSplitter(charsets);
+        final GenerationRun.Measurement measurement = contexts.get(0).getRun().begin(GenerationPhase.RENDER);
+        try {
+            merge(createContext(entryList, splitter), splitter);
+        } catch (Exception e) {
+            splitter.release();
+            throw e;
+        } finally {
+            measurement.end();
+        }
+        if (splitter.getSegmentCount() != entryList.size()) {
+            splitter.release();
+            return null;
+        }
+        final List<JUnitGeneratorResult> results = new ArrayList<JUnitGeneratorResult>(entryList.size());
+        try {
+            for (int i = 0; i < entryList.size(); i++) {
+                String outputFileName = splitter.getName(i);
+                if (outputFileName == null || outputFileName.trim().length() == 0) {
+                    outputFileName = entryList.get(i).getClassName() + "Test";
+                }
+                results.add(place(contexts.get(i), outputFileName, splitter.takeOutput(i)));
+            }
+        } catch (Exception e) {
+            for (JUnitGeneratorResult result : results) {
+                result.getOutput().release();
+            }
+            splitter.release();
+            throw e;
+        }
+        return results;
+    }
+
+    private JUnitGeneratorResult place(JUnitGeneratorContext genCtx, String outputFileName,
+                                       OutputSink output) throws Exception {
+        final GenerationRun.Measurement measurement = genCtx.getRun().begin(GenerationPhase.RESOLVE_PATH);
+        try {
+            return new JUnitGeneratorResult(JUnitGeneratorUtil.resolveOutputFileName(genCtx, outputFileName),
+                    output, genCtx);
+        } catch (Exception e) {
+            output.release();
+            throw e;
+        } finally {
+            measurement.end();
+        }
+    }
+
+    /**
+     * Merge the template with the entries without placing the result anywhere
+     *
+     * @param entryList the list of entries to go into velocity scope
+     * @param writer    where the output goes
+     * @return the context after the merge, holding whatever the template set
+     * @throws Exception when the template can't be merged
+     */
+    public VelocityContext merge(List<TemplateEntry> entryList, Writer writer) throws Exception {
+        final VelocityContext context = createContext(entryList, OutputSplitter.IGNORED);
+        merge(context, writer);
+        return context;
+    }
+
+    /**
+     * Merge a separately parsed copy of the template with every statement timed. This is much slower
+     * than {@link #merge(List, Writer)} and only meant for finding out where a template spends its time.
+     *
+     * @param entryList the list of entries to go into velocity scope
+     * @param writer    where the output goes
+     * @return the profiler holding the timings
+     * @throws Exception when the template can't be parsed or merged
+     */
+    public TemplateProfiler profile(List<TemplateEntry> entryList, Writer writer) throws Exception {
+        final TemplateEngineManager engine = TemplateEngineManager.getInstance();
+        final Template template = engine.parseForProfiling(this.compiledTemplate.getKey(),
+                this.compiledTemplate.getContent());
+        try {
+            final TemplateProfiler profiler = TemplateProfiler.instrument(this.compiledTemplate.getKey(), template);
+            profiler.merge(template, createContext(entryList, OutputSplitter.IGNORED), writer);
+            return profiler;
+        } finally {
+            engine.releaseProfiling(template);
+        }
+    }
+
+    private void merge(VelocityContext context, Writer writer) throws Exception {
+        final CompiledRenderer renderer = this.useCompiledRenderer ? this.compiledTemplate.getRenderer() : null;
+        if (renderer != null) {
+            renderer.render(context, writer);
+        } else {
+            this.compiledTemplate.getTemplate().merge(context, writer);
+        }
+    }
+
+    private VelocityContext createContext(List<TemplateEntry> entryList, OutputSplitter boundary) {
+        final VelocityContext context = new VelocityContext();
+        context.put("entryList", entryList);
+        context.put("today", JUnitGeneratorUtil.formatDate("MM/dd/yyyy"));
+        context.put("date", new DateTool());
+        context.put("strings", STRING_TOOL);
+        context.put("boundary", boundary);
+        return context;
+    }
+}
@@ -0,0 +1,34 @@
+package org.intellij.plugins.junitgen;
+
+import org.intellij.plugins.junitgen.output.OutputSink;
+
+/**
+ * A rendered test waiting to be written out
+ *
+ * @author agent
+ * @since 10/17/26 7:10 PM
+ */
+public class JUnitGeneratorResult {
+
+    private final String outputFile;
+    private final OutputSink output;
+    private final JUnitGeneratorContext genCtx;
+
+    public JUnitGeneratorResult(String outputFile, OutputSink output, JUnitGeneratorContext genCtx) {
+        this.outputFile = outputFile;
+        this.output = output;
+        this.genCtx = genCtx;
+    }
+
+    public String getOutputFile() {
+        return outputFile;
+    }
+
+    public OutputSink getOutput() {
+        return output;
+    }
+
+    public JUnitGeneratorContext getContext() {
+        return genCtx;
+    }
+}
@@ -0,0 +1,132 @@
+package org.intellij.plugins.junitgen;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiJavaFile;
+import org.intellij.plugins.junitgen.bean.JUnitGeneratorSettingsSnapshot;
+import org.intellij.plugins.junitgen.output.WriteBatch;
+import org.intellij.plugins.junitgen.stats.GenerationRun;
+import org.intellij.plugins.junitgen.stats.GenerationStatistics;
+import org.intellij.plugins.junitgen.template.CompiledTemplate;
+import org.intellij.plugins.junitgen.template.TemplateEngineManager;
+import org.intellij.plugins.junitgen.util.JUnitGeneratorUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates the tests for the classes of a file. The PSI analysis and the template merge happen in the
+ * background under a read action and can be cancelled; the new files are then created together in one
+ * (short) write action back on the event dispatch thread.
+ *
+ * @author agent
+ * @since 10/17/26 7:10 PM
+ */
+public class JUnitGeneratorTask extends Task.Backgroundable {
+
+    private static final Logger log = JUnitGeneratorUtil.getLogger(JUnitGeneratorTask.class);
+
+    private final PsiJavaFile file;
+    private final JUnitGeneratorSettingsSnapshot settings;
+    private final String templateKey;
+    private final GenerationRun run;
+    private final List<JUnitGeneratorResult> results = new ArrayList<JUnitGeneratorResult>();
+
+    public JUnitGeneratorTask(Project project, PsiJavaFile file, JUnitGeneratorSettingsSnapshot settings,
+                              String templateKey) {
+        super(project, "Generating JUnit Tests", true);
+        this.file = file;
+        this.settings = settings;
+        this.templateKey = templateKey;
+        this.run = new GenerationRun(templateKey, file.getName());
+    }
+
+    /**
+     * The background read stage: build the model and render the template for every class
+     *
+     * @param indicator the progress indicator
+     */
+    @Override
+    public void run(@NotNull ProgressIndicator indicator) {
+        //the template was parsed when the settings were applied, so this is only a cache lookup
+        final CompiledTemplate template;
+        try {
+            template = TemplateEngineManager.getInstance()
+                    .getTemplate(this.settings.getVmTemplates(), this.templateKey);
+        } catch (Exception e) {
+            log.error(e);
+            return;
+        }
+        final JUnitGeneratorWorker worker = new JUnitGeneratorWorker(myProject, this.settings, template, this.run);
+
+        final PsiClass[] psiClasses = ApplicationManager.getApplication().runReadAction(new Computable<PsiClass[]>() {
+            @Override
+            public PsiClass[] compute() {
+                return file.isValid() ? file.getClasses() : PsiClass.EMPTY_ARRAY;
+            }
+        });
+        indicator.setText2(this.file.getName());
+        if (worker.canGenerateAll(psiClasses.length)) {
+            final List<JUnitGeneratorResult> all;
+            try {
+                all = worker.generateAll(this.file, psiClasses);
+            } catch (Exception e) {
+                //rendering the classes one by one would only fail again
+                log.error(e);
+                return;
+            }
+            if (all != null) {
+                this.results.addAll(all);
+                return;
+            }
+        }
+        indicator.setIndeterminate(false);
+        for (int i = 0; i < psiClasses.length; i++) {
+            indicator.checkCanceled();
+            indicator.setFraction((double) i / psiClasses.length);
+            final JUnitGeneratorResult result = worker.generate(this.file, psiClasses[i]);
+            if (result != null) {
+                this.results.add(result);
+            }
+        }
+    }
+
+    /**
+     * The write stage: create the new files together, then deal with the existing ones one by one
+     */
+    @Override
+    public void onSuccess() {
+        try {
+            final WriteBatch batch = new WriteBatch();
+            batch.addAll(this.results);
+            batch.write(this);
+            for (VirtualFile created : batch.getCreated()) {
+                FileEditorManager.getInstance(myProject).openFile(created, true, true);
+            }
+            for (WriteBatch.Existing existing : batch.getExisting()) {
+                new JUnitGeneratorFileCreator(existing.getFile(), existing.getResult().getOutput(),
+                        existing.getResult().getContext()).run();
+            }
+        } finally {
+            this.results.clear();
+            GenerationStatistics.getInstance().record(this.run);
+        }
+    }
+
+    @Override
+    public void onCancel() {
+        for (JUnitGeneratorResult result : this.results) {
+            result.getOutput().release();
+        }
+        this.results.clear();
+        log.debug("Generation was cancelled");
+    }
+}
@@ -0,0 +1,155 @@
+package org.intellij.plugins.junitgen;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiJavaFile;
+import org.intellij.plugins.junitgen.bean.JUnitGeneratorSettingsSnapshot;
+import org.intellij.plugins.junitgen.bean.TemplateEntry;
+import org.intellij.plugins.junitgen.stats.GenerationRun;
+import org.intellij.plugins.junitgen.template.CompiledTemplate;
+import org.intellij.plugins.junitgen.util.JUnitGeneratorUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the model for a class and renders it in a single read action. A worker holds no state of its
+ * own between classes, so one worker may be used from several threads at once.
+ * <p>When the template marks where each test starts, all the classes of a file can be rendered in one
+ * merge instead.</p>
+ *
+ * @author agent
+ * @since 10/17/26 7:17 PM
+ */
+public class JUnitGeneratorWorker {
+
+    private static final Logger log = JUnitGeneratorUtil.getLogger(JUnitGeneratorWorker.class);
+
+    private final Project project;
+    private final JUnitGeneratorSettingsSnapshot settings;
+    private final GenerationRun run;
+    private final JUnitGeneratorModelBuilder modelBuilder;
+    private final JUnitGeneratorRenderer renderer;
+    private final boolean boundariesMarked;
+
+    public JUnitGeneratorWorker(Project project, JUnitGeneratorSettingsSnapshot settings,
+                                CompiledTemplate template, GenerationRun run) {
+        this(project, settings, template, run, false);
+    }
+
+    /**
+     * Create the worker
+     *
+     * @param project             the project
+     * @param settings            the settings of the run
+     * @param template            the template
+     * @param run                 the run the timings go to
+     * @param useCompiledRenderer true to render with the template compiled to Java when it can be
+     */
+    public JUnitGeneratorWorker(Project project, JUnitGeneratorSettingsSnapshot settings,
+                                CompiledTemplate template, GenerationRun run, boolean useCompiledRenderer) {
+        this.project = project;
+        this.settings = settings;
+        this.run = run;
+        //only build the parts of the model the template looks at
+        this.modelBuilder = new JUnitGeneratorModelBuilder(template.getRequirements());
+        this.renderer = new JUnitGeneratorRenderer(template, useCompiledRenderer);
+        this.boundariesMarked = template.getRequirements().isBoundariesMarked();
+    }
+
+    /**
+     * True if the classes of a file can be rendered together by {@link #generateAll(PsiJavaFile, PsiClass[])}
+     *
+     * @param classCount the number of classes in the file
+     * @return true if the template marks its tests and there is more than one class
+     */
+    public boolean canGenerateAll(int classCount) {
+        return this.boundariesMarked && classCount > 1;
+    }
+
+    /**
+     * Build the models for the classes of a file and render them in a single merge, then cut the output
+     * into one test per class. This saves setting up a merge per class for files with several classes.
+     *
+     * @param file       the file
+     * @param psiClasses the top level classes of the file
+     * @return the rendered tests, or null if the template didn't mark one test per class and the classes
+     *         have to be generated one by one
+     * @throws Exception when building a model or rendering fails
+     */
+    public List<JUnitGeneratorResult> generateAll(final PsiJavaFile file, final PsiClass[] psiClasses)
+            throws Exception {
+        final Exception[] failure = new Exception[1];
+        final List<JUnitGeneratorResult> results =
+                ApplicationManager.getApplication().runReadAction(new Computable<List<JUnitGeneratorResult>>() {
+            @Override
+            public List<JUnitGeneratorResult> compute() {
+                final List<JUnitGeneratorContext> contexts = new ArrayList<JUnitGeneratorContext>(psiClasses.length);
+                final List<TemplateEntry> entryList = new ArrayList<TemplateEntry>(psiClasses.length);
+                try {
+                    for (PsiClass psiClass : psiClasses) {
+                        if (psiClass == null || !psiClass.isValid() || psiClass.getQualifiedName() == null) {
+                            continue;
+                        }
+                        final JUnitGeneratorContext genCtx = new JUnitGeneratorContext(project, file, psiClass, settings, run);
+                        final TemplateEntry entry = modelBuilder.build(genCtx);
+                        if (entry != null) {
+                            contexts.add(genCtx);
+                            entryList.add(entry);
+                        }
+                    }
+                    if (entryList.isEmpty()) {
+                        return new ArrayList<JUnitGeneratorResult>();
+                    }
+                    return renderer.renderAll(contexts, entryList);
+                } catch (ProcessCanceledException e) {
+                    throw e;
+                } catch (Exception e) {
+                    failure[0] = e;
+                }
+                return null;
+            }
+        });
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        return results;
+    }
+
+    /**
+     * Build the model for the class and render it in one read action
+     *
+     * @param file     the file of the class
+     * @param psiClass the class
+     * @return the rendered test or null if there is nothing to generate
+     */
+    public JUnitGeneratorResult generate(final PsiJavaFile file, final PsiClass psiClass) {
+        return ApplicationManager.getApplication().runReadAction(new Computable<JUnitGeneratorResult>() {
+            @Override
+            public JUnitGeneratorResult compute() {
+                if (psiClass == null || !psiClass.isValid() || psiClass.getQualifiedName() == null) {
+                    return null;
+                }
+                final JUnitGeneratorContext genCtx = new JUnitGeneratorContext(project, file, psiClass, settings, run);
+                try {
+                    final TemplateEntry entry = modelBuilder.build(genCtx);
+                    if (entry == null) {
+                        return null;
+                    }
+                    final List<TemplateEntry> entryList = new ArrayList<TemplateEntry>();
+                    entryList.add(entry);
+                    return renderer.render(genCtx, entryList);
+                } catch (ProcessCanceledException e) {
+                    throw e;
+                } catch (Exception e) {
+                    log.error(e);
+                }
+                return null;
+            }
+        });
+    }
+}
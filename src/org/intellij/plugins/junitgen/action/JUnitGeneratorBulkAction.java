@@ -0,0 +1,131 @@
+package org.intellij.plugins.junitgen.action;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.DataContext;
+import com.intellij.openapi.actionSystem.LangDataKeys;
+import com.intellij.openapi.actionSystem.PlatformDataKeys;
+import com.intellij.openapi.actionSystem.Presentation;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDirectory;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiPackage;
+import org.intellij.plugins.junitgen.JUnitGeneratorBulkTask;
+import org.intellij.plugins.junitgen.bean.JUnitGeneratorSettingsSnapshot;
+import org.intellij.plugins.junitgen.util.JUnitGeneratorUtil;
+
+import javax.swing.*;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Generates tests for everything selected in the project view: packages, directories, modules and files.
+ * The template selected in the settings is used for all of them.
+ * <p>Finding the classes needs the indexes, so the action is not available while the IDE is indexing.</p>
+ *
+ * @author agent
+ * @since 10/17/26 7:17 PM
+ */
+public class JUnitGeneratorBulkAction extends AnAction {
+
+    /**
+     * Only look at whether something is selected, working out the roots touches the indexes and is left
+     * for when the action runs
+     *
+     * @param e the event
+     */
+    @Override
+    public void update(AnActionEvent e) {
+        final DataContext dataContext = e.getDataContext();
+        final boolean enabled = PlatformDataKeys.PROJECT.getData(dataContext) != null && hasSelection(dataContext);
+        final Presentation presentation = e.getPresentation();
+        presentation.setEnabled(enabled);
+        presentation.setVisible(enabled);
+    }
+
+    @Override
+    public void actionPerformed(AnActionEvent e) {
+        final DataContext dataContext = e.getDataContext();
+        final Project project = PlatformDataKeys.PROJECT.getData(dataContext);
+        if (project == null) {
+            return;
+        }
+        final Collection<VirtualFile> roots = getRoots(dataContext);
+        if (roots.isEmpty()) {
+            return;
+        }
+        final JUnitGeneratorSettingsSnapshot settings = JUnitGeneratorUtil.getSettings(project);
+        final String templateKey = settings.getSelectedTemplateKey();
+        if (templateKey == null || templateKey.trim().length() == 0 || settings.getTemplate(templateKey) == null) {
+            JOptionPane.showMessageDialog(null,
+                    JUnitGeneratorUtil.getProperty("junit.generator.error.noselectedtemplate"),
+                    JUnitGeneratorUtil.getProperty("junit.generator.error.title"),
+                    JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        //the workers read the PSI, so make sure it matches what the user sees
+        PsiDocumentManager.getInstance(project).commitAllDocuments();
+        ProgressManager.getInstance().run(new JUnitGeneratorBulkTask(project, roots, settings, templateKey));
+    }
+
+    private static boolean hasSelection(DataContext dataContext) {
+        final Module[] modules = LangDataKeys.MODULE_CONTEXT_ARRAY.getData(dataContext);
+        final PsiElement[] elements = LangDataKeys.PSI_ELEMENT_ARRAY.getData(dataContext);
+        final VirtualFile[] files = PlatformDataKeys.VIRTUAL_FILE_ARRAY.getData(dataContext);
+        return (modules != null && modules.length > 0) || LangDataKeys.MODULE_CONTEXT.getData(dataContext) != null
+                || (elements != null && elements.length > 0) || (files != null && files.length > 0);
+    }
+
+    /**
+     * Work out the files and directories to generate for from the selection
+     *
+     * @param dataContext the data context
+     * @return the selected files and directories, empty if there is nothing we can use
+     */
+    private static Collection<VirtualFile> getRoots(DataContext dataContext) {
+        final Set<VirtualFile> roots = new LinkedHashSet<VirtualFile>();
+        final Module[] modules = LangDataKeys.MODULE_CONTEXT_ARRAY.getData(dataContext);
+        if (modules != null) {
+            for (Module module : modules) {
+                addAll(roots, ModuleRootManager.getInstance(module).getSourceRoots());
+            }
+        }
+        final Module module = LangDataKeys.MODULE_CONTEXT.getData(dataContext);
+        if (module != null) {
+            addAll(roots, ModuleRootManager.getInstance(module).getSourceRoots());
+        }
+        final PsiElement[] elements = LangDataKeys.PSI_ELEMENT_ARRAY.getData(dataContext);
+        if (elements != null) {
+            for (PsiElement element : elements) {
+                if (element instanceof PsiPackage) {
+                    for (PsiDirectory directory : ((PsiPackage) element).getDirectories()) {
+                        roots.add(directory.getVirtualFile());
+                    }
+                } else if (element instanceof PsiDirectory) {
+                    roots.add(((PsiDirectory) element).getVirtualFile());
+                } else if (element instanceof PsiFile && ((PsiFile) element).getVirtualFile() != null) {
+                    roots.add(((PsiFile) element).getVirtualFile());
+                }
+            }
+        }
+        if (roots.isEmpty()) {
+            addAll(roots, PlatformDataKeys.VIRTUAL_FILE_ARRAY.getData(dataContext));
+        }
+        return roots;
+    }
+
+    private static void addAll(Set<VirtualFile> roots, VirtualFile[] files) {
+        if (files != null) {
+            for (VirtualFile file : files) {
+                roots.add(file);
+            }
+        }
+    }
+}
@@ -4,12 +4,15 @@ import com.intellij.openapi.actionSystem.*;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.DumbAware;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import org.intellij.plugins.junitgen.bean.JUnitGeneratorSettingsSnapshot;
 import org.intellij.plugins.junitgen.util.JUnitGeneratorUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 /**
  * This group allows us to calculate the templates we have available so the user can select
@@ -21,6 +24,7 @@ import java.util.List;
 public class JUnitGeneratorGroup extends ActionGroup implements DumbAware {
 
     private static final Logger log = JUnitGeneratorUtil.getLogger(JUnitGeneratorGroup.class);
+    private static final Key<Children> CHILDREN_KEY = Key.create("JUnitGenerator.MenuChildren");
 
     @Override
     public void update(AnActionEvent e) {
@@ -30,6 +34,8 @@ public class JUnitGeneratorGroup extends ActionGroup implements DumbAware {
     /**
      * use the settings to determine what groups we have, and which one is the 'default' group. Once we
      * have the list, fire up the action handlers
+     * <p>This runs on every update of the Generate menu, so the list is kept on the project and only built
+     * again when the template names change.</p>
      *
      * @param anActionEvent the event
      * @return the list of children
@@ -44,6 +50,22 @@ public class JUnitGeneratorGroup extends ActionGroup implements DumbAware {
         if (project == null) {
             return AnAction.EMPTY_ARRAY;
         }
+        final JUnitGeneratorSettingsSnapshot settings = JUnitGeneratorUtil.getSettings(project);
+        Children children = project.getUserData(CHILDREN_KEY);
+        if (children == null || children.version != settings.getVersion()) {
+            final Set<String> templateKeys = settings.getVmTemplates().keySet();
+            if (children == null || !children.templateKeys.equals(templateKeys)) {
+                children = new Children(settings.getVersion(), templateKeys, createChildren(templateKeys));
+            } else {
+                //the settings changed, but not the templates we have
+                children = new Children(settings.getVersion(), children.templateKeys, children.actions);
+            }
+            project.putUserData(CHILDREN_KEY, children);
+        }
+        return children.actions;
+    }
+
+    private AnAction[] createChildren(Set<String> templateKeys) {
         final List<AnAction> children = new ArrayList<AnAction>();
         if (log.isDebugEnabled()) {
             log.debug("adding the menu items");
@@ -52,7 +74,7 @@ public class JUnitGeneratorGroup extends ActionGroup implements DumbAware {
         //DefaultActionGroup subgroup = new DefaultActionGroup();
         //subgroup.getTemplatePresentation().setText("Templates", false);
         //subgroup.setPopup(true);
-        for (String templateKey : JUnitGeneratorUtil.getInstance(anActionEvent.getProject()).getVmTemplates().keySet()) {
+        for (String templateKey : templateKeys) {
             final AnAction action = getOrCreateAction(templateKey);
             //subgroup.add(action);
             children.add(action);
@@ -69,4 +91,19 @@ public class JUnitGeneratorGroup extends ActionGroup implements DumbAware {
         }
         return action;
     }
+
+    /**
+     * The actions built for a set of template names
+     */
+    private static class Children {
+        private final long version;
+        private final Set<String> templateKeys;
+        private final AnAction[] actions;
+
+        Children(long version, Set<String> templateKeys, AnAction[] actions) {
+            this.version = version;
+            this.templateKeys = templateKeys;
+            this.actions = actions;
+        }
+    }
 }
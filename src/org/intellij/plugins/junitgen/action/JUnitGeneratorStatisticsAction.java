@@ -0,0 +1,24 @@
+package org.intellij.plugins.junitgen.action;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.PlatformDataKeys;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.ui.Messages;
+import org.intellij.plugins.junitgen.stats.GenerationStatistics;
+
+/**
+ * Shows the timings of the recent generation runs
+ *
+ * @author agent
+ * @since 10/17/26 7:09 PM
+ */
+public class JUnitGeneratorStatisticsAction extends AnAction implements DumbAware {
+
+    @Override
+    public void actionPerformed(AnActionEvent e) {
+        Messages.showInfoMessage(PlatformDataKeys.PROJECT.getData(e.getDataContext()),
+                GenerationStatistics.getInstance().getReport(),
+                "JUnit Generator Statistics");
+    }
+}
@@ -0,0 +1,111 @@
+package org.intellij.plugins.junitgen.bean;
+
+import org.intellij.plugins.junitgen.util.OutputPathPlan;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An immutable copy of the settings that apply to a project. A generation takes one snapshot up front
+ * and reads everything from it, so the settings are looked up once and can't change halfway through.
+ * <p>The version is the settings version the snapshot was taken at; a snapshot with an older version than
+ * the current one is stale.</p>
+ *
+ * @author agent
+ * @since 10/17/26 7:15 PM
+ */
+public final class JUnitGeneratorSettingsSnapshot {
+
+    private final long version;
+    private final String outputFilePattern;
+    private final boolean generateForOverloadedMethods;
+    private final String listOverloadedMethodsBy;
+    private final boolean combineGetterAndSetter;
+    private final Map<String, String> vmTemplates;
+    private final String selectedTemplateKey;
+    private final boolean useProjectSettings;
+    private volatile OutputPathPlan outputPathPlan;
+
+    public JUnitGeneratorSettingsSnapshot(JUnitGeneratorSettings settings, boolean useProjectSettings, long version) {
+        this.version = version;
+        this.outputFilePattern = settings.getOutputFilePattern();
+        this.generateForOverloadedMethods = settings.isGenerateForOverloadedMethods();
+        this.listOverloadedMethodsBy = settings.getListOverloadedMethodsBy();
+        this.combineGetterAndSetter = settings.isCombineGetterAndSetter();
+        this.vmTemplates = settings.getVmTemplates() == null ? Collections.<String, String>emptyMap() :
+                Collections.unmodifiableMap(new LinkedHashMap<String, String>(settings.getVmTemplates()));
+        this.selectedTemplateKey = settings.getSelectedTemplateKey();
+        this.useProjectSettings = useProjectSettings;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public String getOutputFilePattern() {
+        return outputFilePattern;
+    }
+
+    /**
+     * The output file pattern, compiled the first time it is needed
+     *
+     * @return the plan
+     */
+    public OutputPathPlan getOutputPathPlan() {
+        if (this.outputPathPlan == null) {
+            this.outputPathPlan = OutputPathPlan.compile(this.outputFilePattern != null ? this.outputFilePattern : "");
+        }
+        return this.outputPathPlan;
+    }
+
+    public boolean isGenerateForOverloadedMethods() {
+        return generateForOverloadedMethods;
+    }
+
+    public String getListOverloadedMethodsBy() {
+        return listOverloadedMethodsBy;
+    }
+
+    public boolean isCombineGetterAndSetter() {
+        return combineGetterAndSetter;
+    }
+
+    /**
+     * The templates by key
+     *
+     * @return an unmodifiable map
+     */
+    public Map<String, String> getVmTemplates() {
+        return vmTemplates;
+    }
+
+    public String getSelectedTemplateKey() {
+        return selectedTemplateKey;
+    }
+
+    public boolean isUseProjectSettings() {
+        return useProjectSettings;
+    }
+
+    public String getTemplate(String key) {
+        if (key != null) {
+            return this.vmTemplates.get(key);
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "JUnitGeneratorSettingsSnapshot{" +
+                "version=" + version +
+                ", combineGetterAndSetter=" + combineGetterAndSetter +
+                ", outputFilePattern='" + outputFilePattern + '\'' +
+                ", generateForOverloadedMethods=" + generateForOverloadedMethods +
+                ", listOverloadedMethodsBy='" + listOverloadedMethodsBy + '\'' +
+                ", vmTemplates=" + vmTemplates.keySet() +
+                ", selectedTemplateKey='" + selectedTemplateKey + '\'' +
+                ", useProjectSettings=" + useProjectSettings +
+                '}';
+    }
+}
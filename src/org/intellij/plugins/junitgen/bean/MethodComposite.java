@@ -1,12 +1,19 @@
 package org.intellij.plugins.junitgen.bean;
 
 import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiParameter;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.StringTokenizer;
 
 /**
  * A holder for the dissection of the methods
+ * <p>The parameter lists, the signature and the reflection code are computed from the method the first
+ * time something (usually the template) asks for them, so a template only pays for what it uses. The
+ * computation reads the PSI, so these getters must be called inside a read action.</p>
+ * <p>A composite made by {@link #forClass(String)} takes the class independent parts from the composite
+ * it was made from, so they are only computed once for all the classes that share it.</p>
  *
  * @author Jon Osborn
  * @since 1/3/12 4:37 PM
@@ -15,12 +22,17 @@ public class MethodComposite {
 
     private PsiMethod method;
     private String name;
-    private String signature;
-    private List<String> paramClasses;
-    private List<String> paramNames;
-    private List<String> reflectionCode;
+    private String reflectionClassName;
+    private volatile String signature;
+    private volatile List<String> paramClasses;
+    private volatile List<String> paramNames;
+    private volatile List<String> reflectionCode;
     private MethodComposite base;
     private List<MethodComposite> overloadedMethods = new ArrayList<MethodComposite>();
+    /**
+     * the composite this one was made from by {@link #forClass(String)}, or null
+     */
+    private MethodComposite shared;
 
     public PsiMethod getMethod() {
         return method;
@@ -38,7 +50,25 @@ public class MethodComposite {
         this.name = name;
     }
 
+    /**
+     * The class name used to look the method up in the reflection code
+     *
+     * @return the class name
+     */
+    public String getReflectionClassName() {
+        return reflectionClassName;
+    }
+
+    public void setReflectionClassName(String reflectionClassName) {
+        this.reflectionClassName = reflectionClassName;
+    }
+
     public String getSignature() {
+        if (signature == null && shared != null) {
+            signature = shared.getSignature();
+        } else if (signature == null && method != null) {
+            signature = createSignature(method);
+        }
         return signature;
     }
 
@@ -47,6 +77,15 @@ public class MethodComposite {
     }
 
     public List<String> getParamClasses() {
+        if (paramClasses == null && shared != null) {
+            paramClasses = shared.getParamClasses();
+        } else if (paramClasses == null && method != null) {
+            final List<String> paramClassList = new ArrayList<String>();
+            for (PsiParameter param : method.getParameterList().getParameters()) {
+                paramClassList.add(param.getType().getCanonicalText());
+            }
+            paramClasses = paramClassList;
+        }
         return paramClasses;
     }
 
@@ -55,6 +94,15 @@ public class MethodComposite {
     }
 
     public List<String> getParamNames() {
+        if (paramNames == null && shared != null) {
+            paramNames = shared.getParamNames();
+        } else if (paramNames == null && method != null) {
+            final List<String> paramNameList = new ArrayList<String>();
+            for (PsiParameter param : method.getParameterList().getParameters()) {
+                paramNameList.add(param.getName());
+            }
+            paramNames = paramNameList;
+        }
         return paramNames;
     }
 
@@ -63,6 +111,9 @@ public class MethodComposite {
     }
 
     public List<String> getReflectionCode() {
+        if (reflectionCode == null && method != null) {
+            reflectionCode = createReflectionCode(reflectionClassName, method);
+        }
         return reflectionCode;
     }
 
@@ -86,6 +137,66 @@ public class MethodComposite {
         this.overloadedMethods = overloadedMethods;
     }
 
+    /**
+     * Make the composite of this method and its chain of bases as seen from the class being generated.
+     * Only the reflection code depends on that class; the rest is taken from this composite.
+     *
+     * @param className the class name for the reflection code
+     * @return the composite for the class
+     */
+    public MethodComposite forClass(String className) {
+        final MethodComposite composite = new MethodComposite();
+        composite.shared = this;
+        composite.method = this.method;
+        composite.name = this.name;
+        composite.reflectionClassName = className;
+        composite.base = this.base != null ? this.base.forClass(className) : null;
+        return composite;
+    }
+
+    private static String createSignature(PsiMethod method) {
+
+        String signature;
+        String params = "";
+
+        for (PsiParameter param : method.getParameterList().getParameters()) {
+            params += param.getText() + ", ";
+        }
+
+        if (params.endsWith(", ")) {
+            params = params.substring(0, params.length() - 2);
+        }
+
+        signature = method.getName() + "(" + params + ")";
+
+        return signature;
+
+    }
+
+    private static List<String> createReflectionCode(String className, PsiMethod method) {
+
+        String getMethodText = "\"" + method.getName() + "\"";
+
+        for (PsiParameter param : method.getParameterList().getParameters()) {
+            String paramClassName = (new StringTokenizer(param.getText(), " ")).nextToken();
+            getMethodText = getMethodText + ", " + paramClassName + ".class";
+        }
+
+        List<String> reflectionCode = new ArrayList<String>();
+        reflectionCode.add("/*");
+        reflectionCode.add("try {");
+        reflectionCode.add("   Method method = " + className + ".getClass().getMethod(" + getMethodText + ");");
+        reflectionCode.add("   method.setAccessible(true);");
+        reflectionCode.add("   method.invoke(<Object>, <Parameters>);");
+        reflectionCode.add("} catch(NoSuchMethodException e) {");
+        reflectionCode.add("} catch(IllegalAccessException e) {");
+        reflectionCode.add("} catch(InvocationTargetException e) {");
+        reflectionCode.add("}");
+        reflectionCode.add("*/");
+
+        return reflectionCode;
+    }
+
     @Override
     public String toString() {
         return "MethodComposite{" +
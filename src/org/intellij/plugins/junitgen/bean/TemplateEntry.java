@@ -1,10 +1,16 @@
 package org.intellij.plugins.junitgen.bean;
 
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiField;
+
+import java.util.ArrayList;
 import java.util.List;
 
 /**
  * DataHolder class. Needs to be public since velocity is using it in the
  * template.
+ * <p>The field list is collected from the class the first time the template asks for it, which must be
+ * inside a read action.</p>
  *
  * @author Jon Osborn
  */
@@ -12,7 +18,8 @@ public class TemplateEntry {
 
     private final List<MethodComposite> methodList;
     private final List<MethodComposite> privateMethodList;
-    private final List<String> fieldList;
+    private final PsiClass psiClass;
+    private volatile List<String> fieldList;
 
     private String className;
     private String packageName;
@@ -21,12 +28,12 @@ public class TemplateEntry {
                          String packageName,
                          List<MethodComposite> methodList,
                          List<MethodComposite> privateMethodList,
-                         List<String> fieldList) {
+                         PsiClass psiClass) {
         this.className = className;
         this.packageName = packageName;
         this.methodList = methodList;
         this.privateMethodList = privateMethodList;
-        this.fieldList = fieldList;
+        this.psiClass = psiClass;
     }
 
     public String getClassName() {
@@ -38,6 +45,17 @@ public class TemplateEntry {
     }
 
     public List<String> getFieldList() {
+        if (fieldList == null) {
+            final List<String> fields = new ArrayList<String>();
+            if (psiClass != null) {
+                collectFields(psiClass, fields);
+                //templates have always seen the class fields once more for every inner class, keep it that way
+                for (int i = psiClass.getAllInnerClasses().length; i > 0; i--) {
+                    collectFields(psiClass, fields);
+                }
+            }
+            fieldList = fields;
+        }
         return fieldList;
     }
 
@@ -48,4 +66,10 @@ public class TemplateEntry {
     public List<MethodComposite> getPrivateMethodList() {
         return privateMethodList;
     }
+
+    private static void collectFields(PsiClass psiClass, List<String> fields) {
+        for (PsiField field : psiClass.getFields()) {
+            fields.add(field.getName());
+        }
+    }
 }
@@ -1,6 +1,5 @@
 package org.intellij.plugins.junitgen.diff;
 
-import com.intellij.openapi.actionSystem.DataKeys;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.diff.*;
@@ -33,7 +32,7 @@ public final class DiffFileAction {
     public void showDiff(String proposedFileContents, final VirtualFile existingFile,
                          JUnitGeneratorContext context) throws IOException {
 
-        final Project project = DataKeys.PROJECT.getData(context.getDataContext());
+        final Project project = context.getProject();
 
         if (project != null) {
             if (log.isDebugEnabled()) {
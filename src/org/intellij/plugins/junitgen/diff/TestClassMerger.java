@@ -0,0 +1,125 @@
+package org.intellij.plugins.junitgen.diff;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileTypes.StdFileTypes;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.*;
+import com.intellij.psi.codeStyle.CodeStyleManager;
+import org.intellij.plugins.junitgen.util.JUnitGeneratorUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Merges a generated test into the existing test class by structure instead of by text. The generated
+ * test is parsed, its methods are matched with the methods of the existing class by name, and only the
+ * ones the existing class doesn't have yet are added, along with the imports they may need. Everything
+ * that is already in the existing class is left exactly as it was.
+ *
+ * @author agent
+ * @since 10/17/26 7:19 PM
+ */
+public class TestClassMerger {
+
+    private static final Logger log = JUnitGeneratorUtil.getLogger(TestClassMerger.class);
+
+    private final Project project;
+
+    public TestClassMerger(Project project) {
+        this.project = project;
+    }
+
+    /**
+     * Add the methods and imports of the generated test that the existing test is missing. Must be
+     * called on the event dispatch thread; the change is a single undoable command.
+     *
+     * @param existingFile  the existing test
+     * @param generatedText the generated test
+     * @return the number of methods added, or -1 if the existing file has no class to merge into
+     */
+    public int merge(VirtualFile existingFile, String generatedText) {
+        PsiDocumentManager.getInstance(this.project).commitAllDocuments();
+        final PsiFile existingPsiFile = PsiManager.getInstance(this.project).findFile(existingFile);
+        if (!(existingPsiFile instanceof PsiJavaFile)) {
+            return -1;
+        }
+        final PsiJavaFile existing = (PsiJavaFile) existingPsiFile;
+        final PsiJavaFile generated = (PsiJavaFile) PsiFileFactory.getInstance(this.project)
+                .createFileFromText(existingFile.getName(), StdFileTypes.JAVA, generatedText);
+        final PsiClass generatedClass = getMainClass(generated, null);
+        final PsiClass existingClass = getMainClass(existing, generatedClass != null ? generatedClass.getName() : null);
+        if (generatedClass == null || existingClass == null) {
+            return -1;
+        }
+
+        final List<PsiMethod> missingMethods = new ArrayList<PsiMethod>();
+        for (PsiMethod method : generatedClass.getMethods()) {
+            if (existingClass.findMethodsByName(method.getName(), false).length == 0) {
+                missingMethods.add(method);
+            }
+        }
+        if (missingMethods.isEmpty()) {
+            return 0;
+        }
+        final List<PsiImportStatementBase> missingImports = new ArrayList<PsiImportStatementBase>();
+        final PsiImportList existingImports = existing.getImportList();
+        final PsiImportList generatedImports = generated.getImportList();
+        if (existingImports != null && generatedImports != null) {
+            for (PsiImportStatementBase statement : generatedImports.getAllImportStatements()) {
+                if (!hasImport(existingImports, statement)) {
+                    missingImports.add(statement);
+                }
+            }
+        }
+
+        new WriteCommandAction.Simple(this.project, "Merge Generated Test Methods", existing) {
+            @Override
+            protected void run() throws Throwable {
+                for (PsiImportStatementBase statement : missingImports) {
+                    existingImports.add(statement);
+                }
+                final CodeStyleManager codeStyleManager = CodeStyleManager.getInstance(project);
+                for (PsiMethod method : missingMethods) {
+                    //only what we add gets formatted, the rest of the class stays as the user wrote it
+                    codeStyleManager.reformat(existingClass.add(method));
+                }
+            }
+        }.execute();
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Merged %d methods and %d imports into %s", missingMethods.size(),
+                    missingImports.size(), existingFile.getPath()));
+        }
+        return missingMethods.size();
+    }
+
+    /**
+     * The class named like the generated class, or the first class of the file
+     *
+     * @param file the file
+     * @param name the name we prefer, may be null
+     * @return the class or null if the file has none
+     */
+    private static PsiClass getMainClass(PsiJavaFile file, String name) {
+        final PsiClass[] classes = file.getClasses();
+        if (name != null) {
+            for (PsiClass psiClass : classes) {
+                if (name.equals(psiClass.getName())) {
+                    return psiClass;
+                }
+            }
+        }
+        return classes.length > 0 ? classes[0] : null;
+    }
+
+    private static boolean hasImport(PsiImportList importList, PsiImportStatementBase statement) {
+        final String text = statement.getText();
+        for (PsiImportStatementBase existing : importList.getAllImportStatements()) {
+            if (existing.getText().equals(text)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,120 @@
+package org.intellij.plugins.junitgen.output;
+
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.vfs.VirtualFile;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Tells whether a rendered test is byte for byte what its file already holds, so regenerating an
+ * unchanged test can skip the write, the diff and the dialog. The hash of a file is remembered on the file
+ * together with its modification stamp and only computed again once the file changed.
+ *
+ * @author agent
+ * @since 10/17/26 7:18 PM
+ */
+public class ContentHash {
+
+    private static final Key<StampedHash> HASH_KEY = Key.create("JUnitGenerator.ContentHash");
+    private static final String ALGORITHM = "MD5";
+
+    private ContentHash() {
+    }
+
+    /**
+     * Return true if the file already contains exactly the output. A file with unsaved changes in an
+     * editor is never the same, the user is looking at something else.
+     *
+     * @param file   the existing file
+     * @param output the rendered output
+     * @return true if writing the output would not change the file
+     * @throws IOException when either side can't be read
+     */
+    public static boolean isSameContent(VirtualFile file, OutputSink output) throws IOException {
+        if (FileDocumentManager.getInstance().isFileModified(file)) {
+            return false;
+        }
+        final boolean sameCharset = output.getCharset().equals(file.getCharset());
+        //the cheap check first
+        if (sameCharset && output.size() != file.getLength()) {
+            return false;
+        }
+        return Arrays.equals(getHash(file), getHash(output, file));
+    }
+
+    /**
+     * Remember that the file now holds the output, typically right after writing it
+     *
+     * @param file   the file
+     * @param output the output written to it
+     * @throws IOException when the output can't be read
+     */
+    public static void remember(VirtualFile file, OutputSink output) throws IOException {
+        file.putUserData(HASH_KEY, new StampedHash(file.getModificationStamp(), getHash(output, file)));
+    }
+
+    /**
+     * The hash of the file's bytes, from the cache if the file didn't change since
+     *
+     * @param file the file
+     * @return the hash
+     * @throws IOException when the file can't be read
+     */
+    static byte[] getHash(VirtualFile file) throws IOException {
+        final long stamp = file.getModificationStamp();
+        final StampedHash cached = file.getUserData(HASH_KEY);
+        if (cached != null && cached.stamp == stamp) {
+            return cached.hash;
+        }
+        final MessageDigest digest = newDigest();
+        digest.update(file.contentsToByteArray());
+        final byte[] hash = digest.digest();
+        file.putUserData(HASH_KEY, new StampedHash(stamp, hash));
+        return hash;
+    }
+
+    /**
+     * The hash of the output as it would be written to the file
+     *
+     * @param output the output
+     * @param file   the file it would be written to
+     * @return the hash
+     * @throws IOException when the output can't be read
+     */
+    static byte[] getHash(OutputSink output, VirtualFile file) throws IOException {
+        final MessageDigest digest = newDigest();
+        if (output.getCharset().equals(file.getCharset())) {
+            output.digest(digest);
+        } else {
+            //this is how the sink writes to a file with another charset
+            digest.update(output.getText().getBytes(file.getCharset().name()));
+        }
+        return digest.digest();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            //every JVM is required to support MD5
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A hash and the modification stamp of the file it was taken at
+     */
+    private static class StampedHash {
+        private final long stamp;
+        private final byte[] hash;
+
+        StampedHash(long stamp, byte[] hash) {
+            this.stamp = stamp;
+            this.hash = hash;
+        }
+    }
+}
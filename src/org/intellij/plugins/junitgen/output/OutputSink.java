@@ -0,0 +1,79 @@
+package org.intellij.plugins.junitgen.output;
+
+import com.intellij.openapi.vfs.VirtualFile;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+
+/**
+ * The destination for a rendered template. The render is encoded as it is written, so the output
+ * exists once as bytes in the target charset and is only turned back into a string if someone
+ * really needs the text (the diff dialog).
+ *
+ * @author agent
+ * @since 10/17/26 7:07 PM
+ */
+public interface OutputSink {
+
+    /**
+     * The writer the template is merged into
+     *
+     * @return the writer
+     */
+    Writer getWriter();
+
+    /**
+     * The charset the output is encoded with
+     *
+     * @return the charset
+     */
+    Charset getCharset();
+
+    /**
+     * The number of encoded bytes written so far
+     *
+     * @return the size in bytes
+     */
+    int size() throws IOException;
+
+    /**
+     * Copy the encoded output to the stream
+     *
+     * @param out the stream
+     * @throws IOException when the stream can't be written
+     */
+    void writeTo(OutputStream out) throws IOException;
+
+    /**
+     * Replace the contents of the file with the output, re-encoding only if the file uses a different charset
+     *
+     * @param file      the file to write
+     * @param requestor the requestor for the VFS event
+     * @throws IOException when the file can't be written
+     */
+    void writeTo(VirtualFile file, Object requestor) throws IOException;
+
+    /**
+     * Feed the encoded output to the digest without copying it
+     *
+     * @param digest the digest to update
+     * @throws IOException when the output can't be flushed
+     */
+    void digest(MessageDigest digest) throws IOException;
+
+    /**
+     * Decode the output back into text. This copies the whole output, so only call it when a string
+     * is really required.
+     *
+     * @return the text
+     */
+    String getText() throws IOException;
+
+    /**
+     * Give the underlying storage back. The sink can't be used afterwards.
+     */
+    void release();
+}
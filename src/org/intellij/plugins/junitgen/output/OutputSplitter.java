@@ -0,0 +1,155 @@
+package org.intellij.plugins.junitgen.output;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cuts the output of one merge over the entries of several classes into one {@link OutputSink} per test.
+ * The template marks the start of a test with <code>$boundary.begin($testClass)</code>, which writes
+ * nothing, and from there on the output goes straight into the sink of that test. Anything written
+ * before the first mark belongs to the first test.
+ *
+ * @author agent
+ * @since 10/17/26 7:34 PM
+ */
+public class OutputSplitter extends Writer {
+
+    /**
+     * put in the context of merges that are not split, the marks are ignored
+     */
+    public static final OutputSplitter IGNORED = new OutputSplitter(new ArrayList<Charset>(), false);
+
+    private final List<Charset> charsets;
+    private final boolean marking;
+    private final List<OutputSink> outputs = new ArrayList<OutputSink>();
+    private final List<String> names = new ArrayList<String>();
+    /**
+     * what was written before the first mark, until it can go into the first sink
+     */
+    private StringBuilder leading = new StringBuilder();
+    private int segmentCount;
+    private Writer current;
+
+    /**
+     * Create the splitter
+     *
+     * @param charsets the charsets to encode the tests with, one per test expected
+     */
+    public OutputSplitter(List<Charset> charsets) {
+        this(charsets, true);
+    }
+
+    private OutputSplitter(List<Charset> charsets, boolean marking) {
+        this.charsets = charsets;
+        this.marking = marking;
+    }
+
+    /**
+     * Mark the start of the next test, called from the template
+     *
+     * @param name the name of the test class
+     * @return an empty string so the mark doesn't show up in the output
+     */
+    public String begin(String name) {
+        if (this.marking) {
+            this.segmentCount++;
+            if (this.segmentCount <= this.charsets.size()) {
+                final OutputSink output = new PooledOutputSink(this.charsets.get(this.segmentCount - 1));
+                this.outputs.add(output);
+                this.names.add(name);
+                this.current = output.getWriter();
+            } else {
+                //more tests than expected, the merge is thrown away so don't keep any of it
+                this.current = null;
+            }
+        }
+        return "";
+    }
+
+    /**
+     * The number of tests marked
+     *
+     * @return the count
+     */
+    public int getSegmentCount() {
+        return this.segmentCount;
+    }
+
+    /**
+     * The name the template gave the test when marking it
+     *
+     * @param index the index of the test
+     * @return the name, may be null
+     */
+    public String getName(int index) {
+        return this.names.get(index);
+    }
+
+    /**
+     * Take the output of the test, the caller releases it from then on
+     *
+     * @param index the index of the test
+     * @return the output from its mark up to the next one
+     * @throws IOException when the output before the first mark can't be written
+     */
+    public OutputSink takeOutput(int index) throws IOException {
+        writeLeading();
+        final OutputSink output = this.outputs.get(index);
+        this.outputs.set(index, null);
+        return output;
+    }
+
+    /**
+     * Release the outputs that were not taken
+     */
+    public void release() {
+        this.current = null;
+        this.leading = null;
+        for (int i = 0; i < this.outputs.size(); i++) {
+            final OutputSink output = this.outputs.get(i);
+            if (output != null) {
+                this.outputs.set(i, null);
+                output.release();
+            }
+        }
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) throws IOException {
+        if (this.current != null) {
+            writeLeading();
+            this.current.write(chars, offset, length);
+        } else if (this.marking && this.segmentCount == 0) {
+            this.leading.append(chars, offset, length);
+        }
+    }
+
+    @Override
+    public void write(String str, int offset, int length) throws IOException {
+        if (this.current != null) {
+            writeLeading();
+            this.current.write(str, offset, length);
+        } else if (this.marking && this.segmentCount == 0) {
+            this.leading.append(str, offset, offset + length);
+        }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private void writeLeading() throws IOException {
+        if (this.leading != null && !this.outputs.isEmpty() && this.outputs.get(0) != null) {
+            final StringBuilder text = this.leading;
+            this.leading = null;
+            this.outputs.get(0).getWriter().write(text.toString());
+        }
+    }
+}
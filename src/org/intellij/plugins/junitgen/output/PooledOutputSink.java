@@ -0,0 +1,153 @@
+package org.intellij.plugins.junitgen.output;
+
+import com.intellij.openapi.vfs.VirtualFile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * An {@link OutputSink} that encodes into a byte buffer borrowed from a small pool. Generated tests are
+ * rendered one after the other, so the same few buffers get reused instead of growing a new one each time.
+ *
+ * @author agent
+ * @since 10/17/26 7:07 PM
+ */
+public class PooledOutputSink implements OutputSink {
+
+    private static final int POOL_SIZE = 8;
+    private static final int INITIAL_CAPACITY = 16 * 1024;
+    /**
+     * buffers that grew beyond this are left for the garbage collector instead of being pooled
+     */
+    private static final int MAX_POOLED_CAPACITY = 1024 * 1024;
+
+    private static final Queue<Buffer> pool = new ConcurrentLinkedQueue<Buffer>();
+
+    private final Charset charset;
+    private Buffer buffer;
+    private final Writer writer;
+
+    public PooledOutputSink(Charset charset) {
+        this.charset = charset;
+        this.buffer = borrow();
+        //write through a guard so a writer that outlives release() can't reach a buffer that went back to the pool
+        this.writer = new OutputStreamWriter(new GuardedStream(), charset);
+    }
+
+    @Override
+    public Writer getWriter() {
+        getBuffer();
+        return this.writer;
+    }
+
+    @Override
+    public Charset getCharset() {
+        return this.charset;
+    }
+
+    @Override
+    public int size() throws IOException {
+        this.writer.flush();
+        return getBuffer().size();
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        this.writer.flush();
+        getBuffer().writeTo(out);
+    }
+
+    @Override
+    public void writeTo(VirtualFile file, Object requestor) throws IOException {
+        final OutputStream out = file.getOutputStream(requestor);
+        try {
+            if (this.charset.equals(file.getCharset())) {
+                writeTo(out);
+            } else {
+                //the existing file uses a different encoding, so honor it
+                out.write(getText().getBytes(file.getCharset().name()));
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    @Override
+    public void digest(MessageDigest digest) throws IOException {
+        this.writer.flush();
+        getBuffer().digest(digest);
+    }
+
+    @Override
+    public String getText() throws IOException {
+        this.writer.flush();
+        return getBuffer().toString(this.charset);
+    }
+
+    @Override
+    public void release() {
+        final Buffer released = this.buffer;
+        this.buffer = null;
+        if (released != null && released.capacity() <= MAX_POOLED_CAPACITY && pool.size() < POOL_SIZE) {
+            released.reset();
+            pool.offer(released);
+        }
+    }
+
+    private Buffer getBuffer() {
+        if (this.buffer == null) {
+            throw new IllegalStateException("The output was already released");
+        }
+        return this.buffer;
+    }
+
+    private static Buffer borrow() {
+        final Buffer buffer = pool.poll();
+        return buffer != null ? buffer : new Buffer();
+    }
+
+    /**
+     * Passes the bytes on to the buffer while this sink still holds one and fails afterwards
+     */
+    private class GuardedStream extends OutputStream {
+
+        @Override
+        public void write(int b) {
+            getBuffer().write(b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            getBuffer().write(bytes, offset, length);
+        }
+    }
+
+    /**
+     * Exposes the internal array so we can decode and hash without copying it first
+     */
+    private static class Buffer extends ByteArrayOutputStream {
+
+        Buffer() {
+            super(INITIAL_CAPACITY);
+        }
+
+        int capacity() {
+            return this.buf.length;
+        }
+
+        synchronized String toString(Charset charset) {
+            return new String(this.buf, 0, this.count, charset);
+        }
+
+        synchronized void digest(MessageDigest digest) {
+            digest.update(this.buf, 0, this.count);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package org.intellij.plugins.junitgen.output;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.intellij.plugins.junitgen.JUnitGeneratorResult;
+import org.intellij.plugins.junitgen.stats.GenerationPhase;
+import org.intellij.plugins.junitgen.stats.GenerationRun;
+import org.intellij.plugins.junitgen.util.JUnitGeneratorUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Collects rendered tests and creates their files together: directories and files are created through
+ * the VFS in a single write action, followed by one asynchronous refresh for the whole set. Nothing goes
+ * around the VFS, so there is nothing to refresh synchronously.
+ * <p>Tests whose file already exists are not touched; they are handed back so the caller can decide
+ * what to do with them.</p>
+ *
+ * @author agent
+ * @since 10/17/26 7:18 PM
+ */
+public class WriteBatch {
+
+    private static final Logger log = JUnitGeneratorUtil.getLogger(WriteBatch.class);
+
+    private final List<JUnitGeneratorResult> pending = new ArrayList<JUnitGeneratorResult>();
+    private final List<VirtualFile> created = new ArrayList<VirtualFile>();
+    private final List<Existing> existing = new ArrayList<Existing>();
+    private int failed;
+
+    public void add(JUnitGeneratorResult result) {
+        this.pending.add(result);
+    }
+
+    public void addAll(Collection<JUnitGeneratorResult> results) {
+        this.pending.addAll(results);
+    }
+
+    public boolean isEmpty() {
+        return this.pending.isEmpty();
+    }
+
+    /**
+     * Create the files for everything pending. Must be called on the event dispatch thread. The sinks of
+     * the created and the failed files are released; the sinks of the existing files now belong to the caller.
+     *
+     * @param requestor the requestor for the VFS events
+     */
+    public void write(final Object requestor) {
+        if (this.pending.isEmpty()) {
+            return;
+        }
+        final Iterator<JUnitGeneratorResult> iterator = this.pending.iterator();
+        try {
+            ApplicationManager.getApplication().runWriteAction(new Runnable() {
+                @Override
+                public void run() {
+                    while (iterator.hasNext()) {
+                        write(iterator.next(), requestor);
+                    }
+                }
+            });
+        } finally {
+            //whatever we didn't get to is given back
+            while (iterator.hasNext()) {
+                final JUnitGeneratorResult result = iterator.next();
+                this.failed++;
+                log.warn(String.format("Could not create %s, the batch was aborted", result.getOutputFile()));
+                result.getOutput().release();
+            }
+            this.pending.clear();
+        }
+        if (!this.created.isEmpty()) {
+            //pick up anything the file system has to say about the new files, without waiting for it
+            LocalFileSystem.getInstance().refreshFiles(this.created, true, false, null);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Created %d files, %d already existed, %d failed",
+                    this.created.size(), this.existing.size(), this.failed));
+        }
+    }
+
+    /**
+     * The files we created
+     *
+     * @return the files
+     */
+    public List<VirtualFile> getCreated() {
+        return this.created;
+    }
+
+    /**
+     * The tests whose file was already there
+     *
+     * @return the tests and their files
+     */
+    public List<Existing> getExisting() {
+        return this.existing;
+    }
+
+    /**
+     * The number of tests we couldn't write
+     *
+     * @return the count
+     */
+    public int getFailed() {
+        return this.failed;
+    }
+
+    private void write(JUnitGeneratorResult result, Object requestor) {
+        final GenerationRun.Measurement measurement = result.getContext().getRun().begin(GenerationPhase.WRITE);
+        boolean release = true;
+        try {
+            final String path = result.getOutputFile();
+            final File file = new File(path);
+            VirtualFile virtualFile = LocalFileSystem.getInstance().findFileByPath(path);
+            if (virtualFile == null && file.exists()) {
+                //created behind the VFS's back, the rare case that is worth a synchronous refresh
+                virtualFile = LocalFileSystem.getInstance().refreshAndFindFileByIoFile(file);
+            }
+            if (virtualFile != null && virtualFile.exists()) {
+                this.existing.add(new Existing(result, virtualFile));
+                release = false;
+                return;
+            }
+            final VirtualFile directory = VfsUtil.createDirectoryIfMissing(file.getParent());
+            if (directory == null) {
+                throw new IOException(String.format("Could not create the directory %s", file.getParent()));
+            }
+            final VirtualFile newFile = directory.createChildData(requestor, file.getName());
+            result.getOutput().writeTo(newFile, requestor);
+            this.created.add(newFile);
+        } catch (IOException e) {
+            failed(result, e);
+        } catch (RuntimeException e) {
+            //the VFS reports invalid files and names this way
+            failed(result, e);
+        } finally {
+            measurement.end();
+            if (release) {
+                result.getOutput().release();
+            }
+        }
+    }
+
+    private void failed(JUnitGeneratorResult result, Exception e) {
+        this.failed++;
+        log.warn(String.format("Could not create %s", result.getOutputFile()), e);
+    }
+
+    /**
+     * A rendered test whose file already exists
+     */
+    public static class Existing {
+        private final JUnitGeneratorResult result;
+        private final VirtualFile file;
+
+        Existing(JUnitGeneratorResult result, VirtualFile file) {
+            this.result = result;
+            this.file = file;
+        }
+
+        public JUnitGeneratorResult getResult() {
+            return result;
+        }
+
+        public VirtualFile getFile() {
+            return file;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.intellij.plugins.junitgen.stats;
+
+/**
+ * The phases of a generation run we keep timings for
+ *
+ * @author agent
+ * @since 10/17/26 7:09 PM
+ */
+public enum GenerationPhase {
+
+    SCAN("PSI scan"),
+    COMPOSITES("Method composites"),
+    RENDER("Template render"),
+    RESOLVE_PATH("Path resolution"),
+    WRITE("File I/O and VFS refresh");
+
+    private final String displayName;
+
+    GenerationPhase(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
@@ -0,0 +1,151 @@
+package org.intellij.plugins.junitgen.stats;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The timings of a single generation run. Each phase accumulates wall time and the bytes allocated by the
+ * thread doing the work, both measured in nanoseconds and bytes. Phases may be measured from several
+ * threads at once.
+ *
+ * @author agent
+ * @since 10/17/26 7:09 PM
+ */
+public class GenerationRun {
+
+    private static final GenerationPhase[] PHASES = GenerationPhase.values();
+
+    private final String templateKey;
+    private final String description;
+    private final long startedAt = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+    private final AtomicLongArray nanos = new AtomicLongArray(PHASES.length);
+    private final AtomicLongArray allocated = new AtomicLongArray(PHASES.length);
+    private final AtomicLongArray counts = new AtomicLongArray(PHASES.length);
+    private volatile long totalNanos = -1;
+
+    public GenerationRun(String templateKey, String description) {
+        this.templateKey = templateKey;
+        this.description = description;
+    }
+
+    /**
+     * Start measuring a phase on the current thread. Call {@link Measurement#end()} in a finally block.
+     *
+     * @param phase the phase
+     * @return the measurement to end
+     */
+    public Measurement begin(GenerationPhase phase) {
+        return new Measurement(phase);
+    }
+
+    /**
+     * Mark the run as complete
+     */
+    public void finish() {
+        this.totalNanos = System.nanoTime() - this.startNanos;
+    }
+
+    public String getTemplateKey() {
+        return templateKey;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    /**
+     * The wall time of the whole run, or the time so far if the run is not finished
+     *
+     * @return the nanoseconds
+     */
+    public long getTotalNanos() {
+        return this.totalNanos >= 0 ? this.totalNanos : System.nanoTime() - this.startNanos;
+    }
+
+    public long getNanos(GenerationPhase phase) {
+        return this.nanos.get(phase.ordinal());
+    }
+
+    /**
+     * The bytes allocated during the phase, or zero when the JVM can't tell us
+     *
+     * @param phase the phase
+     * @return the bytes
+     */
+    public long getAllocatedBytes(GenerationPhase phase) {
+        return this.allocated.get(phase.ordinal());
+    }
+
+    public long getCount(GenerationPhase phase) {
+        return this.counts.get(phase.ordinal());
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(new SimpleDateFormat("HH:mm:ss").format(new Date(this.startedAt)))
+                .append(' ').append(this.templateKey)
+                .append(' ').append(this.description)
+                .append(String.format(" total=%dns", getTotalNanos()));
+        for (GenerationPhase phase : PHASES) {
+            if (getCount(phase) > 0) {
+                sb.append(String.format(" | %s=%dns/%dB (x%d)",
+                        phase.name().toLowerCase(), getNanos(phase), getAllocatedBytes(phase), getCount(phase)));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the bytes allocated so far by the current thread, or -1 if the JVM doesn't support it
+     *
+     * @return the bytes
+     */
+    private static long currentThreadAllocatedBytes() {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            final com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * A phase being measured on one thread
+     */
+    public class Measurement {
+
+        private final GenerationPhase phase;
+        private final long start = System.nanoTime();
+        private final long startBytes = currentThreadAllocatedBytes();
+
+        private Measurement(GenerationPhase phase) {
+            this.phase = phase;
+        }
+
+        /**
+         * Stop measuring and add the time and allocation to the run
+         */
+        public void end() {
+            final int index = this.phase.ordinal();
+            nanos.addAndGet(index, System.nanoTime() - this.start);
+            counts.incrementAndGet(index);
+            if (this.startBytes >= 0) {
+                final long endBytes = currentThreadAllocatedBytes();
+                if (endBytes >= this.startBytes) {
+                    allocated.addAndGet(index, endBytes - this.startBytes);
+                }
+            }
+        }
+    }
+}
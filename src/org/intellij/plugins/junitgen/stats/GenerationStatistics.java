@@ -0,0 +1,189 @@
+package org.intellij.plugins.junitgen.stats;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import org.apache.velocity.runtime.log.LogChute;
+import org.intellij.plugins.junitgen.template.TemplateEngineManager;
+import org.intellij.plugins.junitgen.util.JUnitGeneratorUtil;
+import org.intellij.plugins.junitgen.util.LogAdapter;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the most recent generation runs in a bounded ring buffer. The statistics are shown by the
+ * statistics action and are also published as an MBean so they can be watched from a JMX console.
+ *
+ * @author agent
+ * @since 10/17/26 7:09 PM
+ */
+public class GenerationStatistics implements GenerationStatisticsMXBean, Disposable {
+
+    private static final Logger log = JUnitGeneratorUtil.getLogger(GenerationStatistics.class);
+
+    public static final String OBJECT_NAME = "org.intellij.plugins.junitgen:type=GenerationStatistics";
+    private static final int CAPACITY = 64;
+
+    private final GenerationRun[] runs = new GenerationRun[CAPACITY];
+    private int next;
+    private long total;
+    private ObjectName objectName;
+
+    public GenerationStatistics() {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+                this.objectName = name;
+            }
+        } catch (Exception e) {
+            log.warn("Could not register the generation statistics MBean", e);
+        }
+    }
+
+    /**
+     * Return the application instance from the service manager
+     *
+     * @return the statistics
+     */
+    public static GenerationStatistics getInstance() {
+        return ServiceManager.getService(GenerationStatistics.class);
+    }
+
+    /**
+     * Finish the run and add it to the buffer, pushing out the oldest run if the buffer is full
+     *
+     * @param run the run
+     */
+    public synchronized void record(GenerationRun run) {
+        run.finish();
+        this.runs[this.next] = run;
+        this.next = (this.next + 1) % CAPACITY;
+        this.total++;
+        if (log.isDebugEnabled()) {
+            log.debug(run.toString());
+        }
+    }
+
+    /**
+     * The runs still in the buffer
+     *
+     * @return the runs, newest first
+     */
+    public synchronized List<GenerationRun> getRuns() {
+        final List<GenerationRun> list = new ArrayList<GenerationRun>(CAPACITY);
+        for (int i = 1; i <= CAPACITY; i++) {
+            final GenerationRun run = this.runs[(this.next - i + CAPACITY) % CAPACITY];
+            if (run == null) {
+                break;
+            }
+            list.add(run);
+        }
+        return list;
+    }
+
+    /**
+     * A human readable report of the recent runs
+     *
+     * @return the report
+     */
+    public String getReport() {
+        final List<GenerationRun> recent = getRuns();
+        if (recent.isEmpty()) {
+            return "No tests have been generated yet.";
+        }
+        final Map<String, Long> averageNanos = getAveragePhaseNanos();
+        final Map<String, Long> averageBytes = getAveragePhaseAllocatedBytes();
+        final StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Average of the last %d runs (%d recorded in total):%n", recent.size(), getTotalRunCount()));
+        for (GenerationPhase phase : GenerationPhase.values()) {
+            sb.append(String.format("    %-26s %,14d ns %,14d bytes%n", phase.getDisplayName(),
+                    averageNanos.get(phase.name()), averageBytes.get(phase.name())));
+        }
+        final LogAdapter logAdapter = TemplateEngineManager.getInstance().getLogAdapter();
+        sb.append(String.format("%nVelocity messages: %d trace, %d debug, %d info, %d warn, %d error%n",
+                logAdapter.getMessageCount(LogChute.TRACE_ID), logAdapter.getMessageCount(LogChute.DEBUG_ID),
+                logAdapter.getMessageCount(LogChute.INFO_ID), logAdapter.getMessageCount(LogChute.WARN_ID),
+                logAdapter.getMessageCount(LogChute.ERROR_ID)));
+        sb.append(String.format("%nMost recent runs:%n"));
+        for (GenerationRun run : recent) {
+            sb.append(run).append(String.format("%n"));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public synchronized long getTotalRunCount() {
+        return this.total;
+    }
+
+    @Override
+    public String[] getRecentRuns() {
+        final List<GenerationRun> recent = getRuns();
+        final String[] lines = new String[recent.size()];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = recent.get(i).toString();
+        }
+        return lines;
+    }
+
+    @Override
+    public Map<String, Long> getAveragePhaseNanos() {
+        return average(false);
+    }
+
+    @Override
+    public Map<String, Long> getAveragePhaseAllocatedBytes() {
+        return average(true);
+    }
+
+    @Override
+    public long getVelocityWarningCount() {
+        return TemplateEngineManager.getInstance().getLogAdapter().getMessageCount(LogChute.WARN_ID);
+    }
+
+    @Override
+    public long getVelocityErrorCount() {
+        return TemplateEngineManager.getInstance().getLogAdapter().getMessageCount(LogChute.ERROR_ID);
+    }
+
+    @Override
+    public synchronized void reset() {
+        for (int i = 0; i < CAPACITY; i++) {
+            this.runs[i] = null;
+        }
+        this.next = 0;
+        this.total = 0;
+    }
+
+    @Override
+    public void dispose() {
+        if (this.objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.objectName);
+            } catch (Exception e) {
+                log.debug(e);
+            }
+        }
+    }
+
+    private Map<String, Long> average(boolean allocation) {
+        final List<GenerationRun> recent = getRuns();
+        final Map<String, Long> averages = new LinkedHashMap<String, Long>();
+        for (GenerationPhase phase : GenerationPhase.values()) {
+            long sum = 0;
+            for (GenerationRun run : recent) {
+                sum += allocation ? run.getAllocatedBytes(phase) : run.getNanos(phase);
+            }
+            averages.put(phase.name(), recent.isEmpty() ? 0L : sum / recent.size());
+        }
+        return averages;
+    }
+}
@@ -0,0 +1,47 @@
+package org.intellij.plugins.junitgen.stats;
+
+import java.util.Map;
+
+/**
+ * JMX view of the recent generation runs. It is an MXBean so the maps reach generic consoles as tabular data.
+ *
+ * @author agent
+ * @since 10/17/26 7:09 PM
+ */
+public interface GenerationStatisticsMXBean {
+
+    /**
+     * @return the number of runs recorded since the IDE started or the statistics were reset
+     */
+    long getTotalRunCount();
+
+    /**
+     * @return one line per recent run, newest first
+     */
+    String[] getRecentRuns();
+
+    /**
+     * @return the average wall time per phase of the recent runs in nanoseconds, keyed by phase name
+     */
+    Map<String, Long> getAveragePhaseNanos();
+
+    /**
+     * @return the average allocation per phase of the recent runs in bytes, keyed by phase name
+     */
+    Map<String, Long> getAveragePhaseAllocatedBytes();
+
+    /**
+     * @return the number of warnings velocity logged since the IDE started
+     */
+    long getVelocityWarningCount();
+
+    /**
+     * @return the number of errors velocity logged since the IDE started
+     */
+    long getVelocityErrorCount();
+
+    /**
+     * Forget everything recorded so far
+     */
+    void reset();
+}
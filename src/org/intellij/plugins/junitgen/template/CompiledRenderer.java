@@ -0,0 +1,43 @@
+package org.intellij.plugins.junitgen.template;
+
+import org.apache.velocity.context.Context;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A template turned into a tree of plain Java statements by {@link TemplateCompiler}. Rendering walks the
+ * statements and writes straight to the writer; the text is prepared once and the methods a reference
+ * calls are looked up once per class and remembered at the reference.
+ * <p>A renderer holds no state for a single merge, so one renderer may render from several threads at
+ * once as long as each uses its own context.</p>
+ *
+ * @author agent
+ * @since 10/17/26 7:30 PM
+ */
+public class CompiledRenderer {
+
+    private final String templateName;
+    private final TemplateCompiler.Statement body;
+
+    CompiledRenderer(String templateName, TemplateCompiler.Statement body) {
+        this.templateName = templateName;
+        this.body = body;
+    }
+
+    /**
+     * Render the template with the context. Whatever the template sets ends up in the context, just like
+     * a merge.
+     *
+     * @param context the context
+     * @param writer  the output
+     * @throws IOException when the writer fails
+     */
+    public void render(Context context, Writer writer) throws IOException {
+        this.body.render(new TemplateCompiler.Frame(context, null, null), writer);
+    }
+
+    public String getTemplateName() {
+        return templateName;
+    }
+}
@@ -0,0 +1,75 @@
+package org.intellij.plugins.junitgen.template;
+
+import org.apache.velocity.Template;
+import org.apache.velocity.runtime.RuntimeServices;
+
+/**
+ * A template that was parsed once and can be merged any number of times. The content is kept so a cache
+ * hit can be confirmed against the text it was parsed from. The parts of the model the template uses are
+ * worked out along with the parse.
+ * <p>The template is only turned into a {@link CompiledRenderer} the first time a renderer is asked for.</p>
+ *
+ * @author agent
+ * @since 10/17/26 7:07 PM
+ */
+public class CompiledTemplate {
+
+    private final String key;
+    private final String content;
+    private final Template template;
+    private final TemplateRequirements requirements;
+    private final RuntimeServices runtime;
+    private volatile boolean rendererCompiled;
+    private volatile CompiledRenderer renderer;
+
+    public CompiledTemplate(String key, String content, Template template, RuntimeServices runtime) {
+        this.key = key;
+        this.content = content;
+        this.template = template;
+        this.runtime = runtime;
+        this.requirements = TemplateRequirements.of(template);
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public Template getTemplate() {
+        return template;
+    }
+
+    public TemplateRequirements getRequirements() {
+        return requirements;
+    }
+
+    /**
+     * The template compiled to plain Java statements, compiling it on first use
+     *
+     * @return the renderer, or null if the template has to be interpreted
+     */
+    public CompiledRenderer getRenderer() {
+        if (!this.rendererCompiled) {
+            synchronized (this) {
+                if (!this.rendererCompiled) {
+                    this.renderer = TemplateCompiler.compile(this.template, this.runtime);
+                    this.rendererCompiled = true;
+                }
+            }
+        }
+        return this.renderer;
+    }
+
+    /**
+     * Return true if this template was compiled from the content
+     *
+     * @param content the template text
+     * @return true if the text matches
+     */
+    public boolean isCompiledFrom(String content) {
+        return this.content.equals(content);
+    }
+}
@@ -0,0 +1,277 @@
+package org.intellij.plugins.junitgen.template;
+
+import org.intellij.plugins.junitgen.bean.MethodComposite;
+import org.intellij.plugins.junitgen.bean.TemplateEntry;
+import org.intellij.plugins.junitgen.output.OutputSplitter;
+import org.intellij.plugins.junitgen.util.DateTool;
+import org.intellij.plugins.junitgen.util.StringTool;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Direct accessors for the properties and methods of the objects we put in the template context. The
+ * model is a small, closed set of classes, so instead of looking their getters up by reflection every
+ * access is a plain Java call through a table that is filled once.
+ * <p>Properties are found under both names velocity tries for them, <code>className</code> and
+ * <code>ClassName</code>, and <code>getClassName()</code> called as a method leads to the same accessor.
+ * Only the exact classes are in the table.</p>
+ *
+ * @author agent
+ * @since 10/17/26 7:31 PM
+ */
+public final class ModelAccessors {
+
+    /**
+     * Reads a property
+     */
+    public interface Accessor {
+        Object get(Object target);
+    }
+
+    /**
+     * Calls a method with arguments
+     */
+    public interface Invoker {
+        /**
+         * Return true if the method takes these arguments
+         *
+         * @param args the arguments
+         * @return true if they fit
+         */
+        boolean accepts(Object[] args);
+
+        Object invoke(Object target, Object[] args);
+    }
+
+    private static final Map<Class<?>, Map<String, Accessor>> PROPERTIES = new HashMap<Class<?>, Map<String, Accessor>>();
+    private static final Map<Class<?>, Map<String, Invoker>> METHODS = new HashMap<Class<?>, Map<String, Invoker>>();
+
+    static {
+        property(TemplateEntry.class, "className", new Accessor() {
+            @Override
+            public Object get(Object target) {
+                return ((TemplateEntry) target).getClassName();
+            }
+        });
+        property(TemplateEntry.class, "packageName", new Accessor() {
+            @Override
+            public Object get(Object target) {
+                return ((TemplateEntry) target).getPackageName();
+            }
+        });
+        property(TemplateEntry.class, "methodList", new Accessor() {
+            @Override
+            public Object get(Object target) {
+                return ((TemplateEntry) target).getMethodList();
+            }
+        });
+        property(TemplateEntry.class, "privateMethodList", new Accessor() {
+            @Override
+            public Object get(Object target) {
+                return ((TemplateEntry) target).getPrivateMethodList();
+            }
+        });
+        property(TemplateEntry.class, "fieldList", new Accessor() {
+            @Override
+            public Object get(Object target) {
+                return ((TemplateEntry) target).getFieldList();
+            }
+        });
+
+        property(MethodComposite.class, "name", new Accessor() {
+            @Override
+            public Object get(Object target) {
+                return ((MethodComposite) target).getName();
+            }
+        });
+        property(MethodComposite.class, "signature", new Accessor() {
+            @Override
+            public Object get(Object target) {
+                return ((MethodComposite) target).getSignature();
+            }
+        });
+        property(MethodComposite.class, "paramClasses", new Accessor() {
+            @Override
+            public Object get(Object target) {
+                return ((MethodComposite) target).getParamClasses();
+            }
+        });
+        property(MethodComposite.class, "paramNames", new Accessor() {
+            @Override
+            public Object get(Object target) {
+                return ((MethodComposite) target).getParamNames();
+            }
+        });
+        property(MethodComposite.class, "reflectionCode", new Accessor() {
+            @Override
+            public Object get(Object target) {
+                return ((MethodComposite) target).getReflectionCode();
+            }
+        });
+        property(MethodComposite.class, "base", new Accessor() {
+            @Override
+            public Object get(Object target) {
+                return ((MethodComposite) target).getBase();
+            }
+        });
+        property(MethodComposite.class, "overloadedMethods", new Accessor() {
+            @Override
+            public Object get(Object target) {
+                return ((MethodComposite) target).getOverloadedMethods();
+            }
+        });
+        property(MethodComposite.class, "method", new Accessor() {
+            @Override
+            public Object get(Object target) {
+                return ((MethodComposite) target).getMethod();
+            }
+        });
+
+        property(DateTool.class, "calendar", new Accessor() {
+            @Override
+            public Object get(Object target) {
+                return ((DateTool) target).getCalendar();
+            }
+        });
+        property(DateTool.class, "date", new Accessor() {
+            @Override
+            public Object get(Object target) {
+                return ((DateTool) target).getDate();
+            }
+        });
+        method(DateTool.class, "format", new Invoker() {
+            @Override
+            public boolean accepts(Object[] args) {
+                return args.length == 1 && (args[0] == null || args[0] instanceof String);
+            }
+
+            @Override
+            public Object invoke(Object target, Object[] args) {
+                return ((DateTool) target).format((String) args[0]);
+            }
+        });
+    }
+
+    static {
+        method(StringTool.class, "cap", new StringInvoker() {
+            @Override
+            public Object invoke(Object target, Object[] args) {
+                return ((StringTool) target).cap((String) args[0]);
+            }
+        });
+        method(StringTool.class, "uncap", new StringInvoker() {
+            @Override
+            public Object invoke(Object target, Object[] args) {
+                return ((StringTool) target).uncap((String) args[0]);
+            }
+        });
+        method(StringTool.class, "camelCase", new StringInvoker() {
+            @Override
+            public Object invoke(Object target, Object[] args) {
+                return ((StringTool) target).camelCase((String) args[0]);
+            }
+        });
+        method(StringTool.class, "pascalCase", new StringInvoker() {
+            @Override
+            public Object invoke(Object target, Object[] args) {
+                return ((StringTool) target).pascalCase((String) args[0]);
+            }
+        });
+        method(StringTool.class, "constantCase", new StringInvoker() {
+            @Override
+            public Object invoke(Object target, Object[] args) {
+                return ((StringTool) target).constantCase((String) args[0]);
+            }
+        });
+        method(OutputSplitter.class, "begin", new StringInvoker() {
+            @Override
+            public Object invoke(Object target, Object[] args) {
+                return ((OutputSplitter) target).begin((String) args[0]);
+            }
+        });
+    }
+
+    private ModelAccessors() {
+    }
+
+    /**
+     * The accessor for the property of the class
+     *
+     * @param type     the class of the object
+     * @param property the property as written in the template
+     * @return the accessor or null if the class or property is not in the table
+     */
+    public static Accessor getProperty(Class<?> type, String property) {
+        final Map<String, Accessor> properties = PROPERTIES.get(type);
+        return properties != null ? properties.get(property) : null;
+    }
+
+    /**
+     * The invoker for a call of the method with the arguments. Getters are found here as well when called
+     * without arguments.
+     *
+     * @param type the class of the object
+     * @param name the method name
+     * @param args the arguments
+     * @return the invoker or null if the method is not in the table or doesn't take the arguments
+     */
+    public static Invoker getMethod(Class<?> type, String name, Object[] args) {
+        final Map<String, Invoker> methods = METHODS.get(type);
+        final Invoker invoker = methods != null ? methods.get(name) : null;
+        return invoker != null && invoker.accepts(args) ? invoker : null;
+    }
+
+    private static void property(Class<?> type, String property, Accessor accessor) {
+        Map<String, Accessor> properties = PROPERTIES.get(type);
+        if (properties == null) {
+            properties = new HashMap<String, Accessor>();
+            PROPERTIES.put(type, properties);
+        }
+        final String capitalized = Character.toUpperCase(property.charAt(0)) + property.substring(1);
+        //velocity tries the name as written and with the first letter flipped
+        properties.put(property, accessor);
+        properties.put(capitalized, accessor);
+        method(type, "get" + capitalized, new GetterInvoker(accessor));
+    }
+
+    private static void method(Class<?> type, String name, Invoker invoker) {
+        Map<String, Invoker> methods = METHODS.get(type);
+        if (methods == null) {
+            methods = new HashMap<String, Invoker>();
+            METHODS.put(type, methods);
+        }
+        methods.put(name, invoker);
+    }
+
+    /**
+     * A method that takes a single string
+     */
+    private abstract static class StringInvoker implements Invoker {
+        @Override
+        public boolean accepts(Object[] args) {
+            return args.length == 1 && (args[0] == null || args[0] instanceof String);
+        }
+    }
+
+    /**
+     * A getter called as a method
+     */
+    private static class GetterInvoker implements Invoker {
+        private final Accessor accessor;
+
+        GetterInvoker(Accessor accessor) {
+            this.accessor = accessor;
+        }
+
+        @Override
+        public boolean accepts(Object[] args) {
+            return args.length == 0;
+        }
+
+        @Override
+        public Object invoke(Object target, Object[] args) {
+            return this.accessor.get(target);
+        }
+    }
+}
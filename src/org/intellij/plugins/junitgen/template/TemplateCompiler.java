@@ -0,0 +1,1044 @@
+package org.intellij.plugins.junitgen.template;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.apache.velocity.Template;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.context.Context;
+import org.apache.velocity.context.InternalContextAdapterImpl;
+import org.apache.velocity.exception.VelocityException;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.RuntimeServices;
+import org.apache.velocity.runtime.parser.node.*;
+import org.intellij.plugins.junitgen.util.JUnitGeneratorUtil;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Turns the parsed tree of a template into a {@link CompiledRenderer}. Only the part of the language our
+ * templates are written in is supported: text, references with properties and method calls,
+ * <code>#foreach</code>, <code>#if</code>/<code>#elseif</code>/<code>#else</code>, <code>#set</code>,
+ * and <code>#macro</code> with calls to the macros of the same template. A template that uses anything
+ * else is not compiled and keeps being interpreted by velocity.
+ * <p>The statements follow velocity's own rules: the text is what velocity renders for the text nodes,
+ * a reference that comes out null renders its literal, properties are looked up as
+ * <code>getFoo()</code>, <code>getfoo()</code>, <code>get("foo")</code> and <code>isFoo()</code> in that
+ * order (the classes of {@link ModelAccessors} are read through its table), and <code>#foreach</code> keeps <code>$velocityCount</code> and <code>$velocityHasNext</code> up
+ * to date. Macro arguments are passed by name as in velocity: the macro evaluates the argument again every
+ * time it uses it, and a plain <code>$arg</code> that comes out null renders what the caller wrote.</p>
+ *
+ * @author agent
+ * @since 10/17/26 7:30 PM
+ */
+public class TemplateCompiler {
+
+    private static final Logger log = JUnitGeneratorUtil.getLogger(TemplateCompiler.class);
+
+    private final RuntimeServices runtime;
+    private final String templateName;
+    /**
+     * renders the nodes that don't depend on the context, once, while compiling
+     */
+    private final InternalContextAdapterImpl constantContext = new InternalContextAdapterImpl(new VelocityContext());
+    private final Map<String, Macro> macros = new HashMap<String, Macro>();
+    /**
+     * the argument names of the macro being compiled
+     */
+    private List<String> currentMacroArgs;
+    private final String counterName;
+    private final String hasNextName;
+    private final int counterInitialValue;
+
+    private TemplateCompiler(RuntimeServices runtime, String templateName) {
+        this.runtime = runtime;
+        this.templateName = templateName;
+        this.counterName = runtime.getString(RuntimeConstants.COUNTER_NAME, "velocityCount");
+        this.hasNextName = runtime.getString(RuntimeConstants.HAS_NEXT_NAME, "velocityHasNext");
+        this.counterInitialValue = runtime.getInt(RuntimeConstants.COUNTER_INITIAL_VALUE, 1);
+    }
+
+    /**
+     * Compile the template
+     *
+     * @param template the parsed template
+     * @param runtime  the runtime it was parsed with
+     * @return the renderer, or null if the template uses something we don't compile
+     */
+    public static CompiledRenderer compile(Template template, RuntimeServices runtime) {
+        final Object data = template.getData();
+        if (!(data instanceof Node)) {
+            return null;
+        }
+        try {
+            final TemplateCompiler compiler = new TemplateCompiler(runtime, template.getName());
+            return new CompiledRenderer(template.getName(), compiler.compileChildren((Node) data));
+        } catch (Unsupported e) {
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("Template %s is interpreted: %s", template.getName(), e.getMessage()));
+            }
+            return null;
+        } catch (Exception e) {
+            log.warn(String.format("Template %s could not be compiled, it is interpreted", template.getName()), e);
+            return null;
+        }
+    }
+
+    private Statement compileChildren(Node node) throws Exception {
+        final List<Statement> statements = new ArrayList<Statement>(node.jjtGetNumChildren());
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+            final Node child = node.jjtGetChild(i);
+            if (child instanceof ASTText || child instanceof ASTComment || isTextReference(child)) {
+                //neighbouring text is written in one go
+                final StringWriter writer = new StringWriter();
+                child.render(this.constantContext, writer);
+                text.append(writer.toString());
+                continue;
+            }
+            final Statement statement = compileStatement(child);
+            if (statement != null) {
+                if (text.length() > 0) {
+                    statements.add(new Text(text.toString()));
+                    text.setLength(0);
+                }
+                statements.add(statement);
+            }
+        }
+        if (text.length() > 0) {
+            statements.add(new Text(text.toString()));
+        }
+        return statements.size() == 1 ? statements.get(0) :
+                new Sequence(statements.toArray(new Statement[statements.size()]));
+    }
+
+    /**
+     * Text that follows a method call without a space, like the <code>package</code> of
+     * <code>$boundary.begin($testClass)package</code>, is parsed as a reference that renders its own text
+     */
+    private static boolean isTextReference(Node node) {
+        return node instanceof ASTReference && node.getFirstToken().image.indexOf('$') < 0;
+    }
+
+    /**
+     * Compile a statement
+     *
+     * @param node the node
+     * @return the statement, or null if the node renders nothing
+     * @throws Exception when the node is not supported
+     */
+    private Statement compileStatement(Node node) throws Exception {
+        if (node instanceof ASTReference) {
+            final String literal = node.literal();
+            if (literal == null || !literal.startsWith("$")) {
+                throw new Unsupported("escaped reference " + literal);
+            }
+            final boolean quiet = literal.startsWith("$!");
+            final String root = ((ASTReference) node).getRootString();
+            if (this.currentMacroArgs != null && this.currentMacroArgs.contains(root)
+                    && node.jjtGetNumChildren() == 0 && literal.indexOf('{') < 0) {
+                //velocity renders the literal of the caller for a null argument, but not for ${arg} or $arg.foo
+                return new ArgumentOutput(root, quiet);
+            }
+            return new ReferenceOutput(compileReference((ASTReference) node), literal, quiet);
+        } else if (node instanceof ASTSetDirective) {
+            return compileSet(node);
+        } else if (node instanceof ASTIfStatement) {
+            return compileIf(node);
+        } else if (node instanceof ASTDirective) {
+            final ASTDirective directive = (ASTDirective) node;
+            final String name = directive.getDirectiveName();
+            if ("foreach".equals(name)) {
+                return compileForeach(node);
+            } else if ("macro".equals(name)) {
+                compileMacro(node);
+                return null;
+            }
+            final Macro macro = this.macros.get(name);
+            if (macro == null) {
+                throw new Unsupported("#" + name);
+            }
+            if (macro.argNames.length != node.jjtGetNumChildren()) {
+                throw new Unsupported("#" + name + " called with the wrong number of arguments");
+            }
+            final Expression[] args = new Expression[node.jjtGetNumChildren()];
+            final String[] literals = new String[args.length];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = compileExpression(node.jjtGetChild(i));
+                literals[i] = node.jjtGetChild(i).literal();
+            }
+            return new MacroCall(macro, args, literals);
+        }
+        throw new Unsupported(node.getClass().getSimpleName());
+    }
+
+    private Statement compileSet(Node node) throws Exception {
+        if (node.jjtGetNumChildren() != 2 || !(node.jjtGetChild(0) instanceof ASTReference)
+                || node.jjtGetChild(0).jjtGetNumChildren() > 0) {
+            throw new Unsupported("#set of a property");
+        }
+        final String name = ((ASTReference) node.jjtGetChild(0)).getRootString();
+        if (this.currentMacroArgs != null && this.currentMacroArgs.contains(name)) {
+            throw new Unsupported("#set of the macro argument $" + name);
+        }
+        return new Assignment(name, compileExpression(node.jjtGetChild(1)));
+    }
+
+    private Statement compileIf(Node node) throws Exception {
+        final List<Condition> conditions = new ArrayList<Condition>();
+        final List<Statement> blocks = new ArrayList<Statement>();
+        conditions.add(compileCondition(node.jjtGetChild(0)));
+        blocks.add(compileChildren(node.jjtGetChild(1)));
+        for (int i = 2; i < node.jjtGetNumChildren(); i++) {
+            final Node branch = node.jjtGetChild(i);
+            if (branch instanceof ASTElseIfStatement) {
+                conditions.add(compileCondition(branch.jjtGetChild(0)));
+                blocks.add(compileChildren(branch.jjtGetChild(1)));
+            } else if (branch instanceof ASTElseStatement) {
+                conditions.add(null);
+                blocks.add(compileChildren(branch.jjtGetChild(0)));
+            } else {
+                throw new Unsupported(branch.getClass().getSimpleName() + " in #if");
+            }
+        }
+        return new If(conditions.toArray(new Condition[conditions.size()]),
+                blocks.toArray(new Statement[blocks.size()]));
+    }
+
+    private Statement compileForeach(Node node) throws Exception {
+        if (node.jjtGetNumChildren() != 4 || !(node.jjtGetChild(0) instanceof ASTReference)
+                || node.jjtGetChild(0).jjtGetNumChildren() > 0) {
+            throw new Unsupported("#foreach");
+        }
+        final String name = ((ASTReference) node.jjtGetChild(0)).getRootString();
+        if (this.currentMacroArgs != null && this.currentMacroArgs.contains(name)) {
+            throw new Unsupported("#foreach over the macro argument $" + name);
+        }
+        return new Foreach(name, this.counterName, this.hasNextName, this.counterInitialValue,
+                compileExpression(node.jjtGetChild(2)), compileChildren(node.jjtGetChild(3)));
+    }
+
+    private void compileMacro(Node node) throws Exception {
+        final int count = node.jjtGetNumChildren();
+        if (count < 2 || !(node.jjtGetChild(count - 1) instanceof ASTBlock)) {
+            throw new Unsupported("#macro");
+        }
+        final String name = node.jjtGetChild(0).literal();
+        final String[] argNames = new String[count - 2];
+        for (int i = 1; i < count - 1; i++) {
+            final Node arg = node.jjtGetChild(i);
+            if (!(arg instanceof ASTReference)) {
+                throw new Unsupported("#macro argument " + arg.literal());
+            }
+            argNames[i - 1] = ((ASTReference) arg).getRootString();
+        }
+        final Macro macro = new Macro(argNames);
+        //registered before the body is compiled so the macro may call itself
+        this.macros.put(name, macro);
+        final List<String> outer = this.currentMacroArgs;
+        this.currentMacroArgs = Arrays.asList(argNames);
+        try {
+            macro.body = compileChildren(node.jjtGetChild(count - 1));
+        } finally {
+            this.currentMacroArgs = outer;
+        }
+    }
+
+    private Reference compileReference(ASTReference node) throws Exception {
+        final String root = node.getRootString();
+        if (root == null || "foreach".equals(root)) {
+            throw new Unsupported("reference " + node.literal());
+        }
+        final Access[] chain = new Access[node.jjtGetNumChildren()];
+        for (int i = 0; i < chain.length; i++) {
+            final Node child = node.jjtGetChild(i);
+            if (child instanceof ASTIdentifier) {
+                chain[i] = new PropertyAccess(child.getFirstToken().image);
+            } else if (child instanceof ASTMethod) {
+                final Expression[] args = new Expression[child.jjtGetNumChildren() - 1];
+                for (int j = 0; j < args.length; j++) {
+                    args[j] = compileExpression(child.jjtGetChild(j + 1));
+                }
+                chain[i] = new MethodAccess(((ASTMethod) child).getMethodName(), args);
+            } else {
+                throw new Unsupported(child.getClass().getSimpleName() + " in " + node.literal());
+            }
+        }
+        return new Reference(root, chain, this.templateName, node.getLine(), node.getColumn());
+    }
+
+    private Expression compileExpression(Node node) throws Exception {
+        if (node instanceof ASTExpression && node.jjtGetNumChildren() == 1) {
+            return compileExpression(node.jjtGetChild(0));
+        } else if (node instanceof ASTReference) {
+            return compileReference((ASTReference) node);
+        } else if (node instanceof ASTStringLiteral) {
+            final String image = node.getFirstToken().image;
+            if (image.startsWith("\"") && image.indexOf('$') >= 0) {
+                return compileInterpolation(image);
+            }
+            if (image.indexOf('#') >= 0) {
+                throw new Unsupported("string literal " + image);
+            }
+            return new Constant(node.value(this.constantContext));
+        } else if (node instanceof ASTIntegerLiteral || node instanceof ASTFloatingPointLiteral
+                || node instanceof ASTTrue || node instanceof ASTFalse) {
+            return new Constant(node.value(this.constantContext));
+        }
+        final Condition condition = compileCondition(node);
+        return new Expression() {
+            @Override
+            public Object value(Frame frame) {
+                return condition.evaluate(frame);
+            }
+        };
+    }
+
+    /**
+     * Compile a string literal with references in it, the way velocity renders it: as a little template
+     * of its own, parsed with a space at the end that is dropped again from the result
+     */
+    private Expression compileInterpolation(String image) throws Exception {
+        final String content = image.substring(1, image.length() - 1);
+        if (content.indexOf('#') >= 0 || content.indexOf('"') >= 0 || content.indexOf('\\') >= 0) {
+            throw new Unsupported("string literal " + image);
+        }
+        final SimpleNode tree = this.runtime.parse(new StringReader(content + ' '), this.templateName, false);
+        tree.init(this.constantContext, this.runtime);
+        final Statement statement = compileChildren(tree);
+        return new Expression() {
+            @Override
+            public Object value(Frame frame) {
+                final StringWriter writer = new StringWriter();
+                try {
+                    statement.render(frame, writer);
+                } catch (IOException e) {
+                    //a string writer doesn't throw
+                    throw new IllegalStateException(e);
+                }
+                final StringBuffer value = writer.getBuffer();
+                return value.length() > 0 ? value.substring(0, value.length() - 1) : "";
+            }
+        };
+    }
+
+    private Condition compileCondition(Node node) throws Exception {
+        if (node instanceof ASTExpression && node.jjtGetNumChildren() == 1) {
+            return compileCondition(node.jjtGetChild(0));
+        } else if (node instanceof ASTReference) {
+            final Reference reference = compileReference((ASTReference) node);
+            return new Condition() {
+                @Override
+                public boolean evaluate(Frame frame) {
+                    return isTrue(reference.value(frame));
+                }
+            };
+        } else if (node instanceof ASTTrue || node instanceof ASTFalse) {
+            final boolean value = node instanceof ASTTrue;
+            return new Condition() {
+                @Override
+                public boolean evaluate(Frame frame) {
+                    return value;
+                }
+            };
+        } else if (node instanceof ASTNotNode) {
+            final Condition operand = compileCondition(node.jjtGetChild(0));
+            return new Condition() {
+                @Override
+                public boolean evaluate(Frame frame) {
+                    return !operand.evaluate(frame);
+                }
+            };
+        } else if (node instanceof ASTAndNode || node instanceof ASTOrNode) {
+            final Condition left = compileCondition(node.jjtGetChild(0));
+            final Condition right = compileCondition(node.jjtGetChild(1));
+            final boolean and = node instanceof ASTAndNode;
+            return new Condition() {
+                @Override
+                public boolean evaluate(Frame frame) {
+                    return and ? left.evaluate(frame) && right.evaluate(frame) :
+                            left.evaluate(frame) || right.evaluate(frame);
+                }
+            };
+        } else if (node instanceof ASTEQNode || node instanceof ASTNENode) {
+            final Expression left = compileExpression(node.jjtGetChild(0));
+            final Expression right = compileExpression(node.jjtGetChild(1));
+            final boolean equal = node instanceof ASTEQNode;
+            return new Condition() {
+                @Override
+                public boolean evaluate(Frame frame) {
+                    return isEqual(left.value(frame), right.value(frame)) == equal;
+                }
+            };
+        } else if (node instanceof ASTLTNode || node instanceof ASTGTNode
+                || node instanceof ASTLENode || node instanceof ASTGENode) {
+            final Expression left = compileExpression(node.jjtGetChild(0));
+            final Expression right = compileExpression(node.jjtGetChild(1));
+            final boolean less = node instanceof ASTLTNode || node instanceof ASTLENode;
+            final boolean orEqual = node instanceof ASTLENode || node instanceof ASTGENode;
+            return new Condition() {
+                @Override
+                public boolean evaluate(Frame frame) {
+                    final Object l = left.value(frame);
+                    final Object r = right.value(frame);
+                    if (!(l instanceof Number) || !(r instanceof Number)) {
+                        return false;
+                    }
+                    final int comparison = compareNumbers((Number) l, (Number) r);
+                    return comparison == 0 ? orEqual : (comparison < 0) == less;
+                }
+            };
+        }
+        throw new Unsupported(node.getClass().getSimpleName());
+    }
+
+    static boolean isTrue(Object value) {
+        if (value == null) {
+            return false;
+        } else if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        return value.toString() != null;
+    }
+
+    static boolean isEqual(Object left, Object right) {
+        if (left == null || right == null) {
+            return left == right;
+        } else if (left instanceof Number && right instanceof Number) {
+            return compareNumbers((Number) left, (Number) right) == 0;
+        } else if (left.getClass().isAssignableFrom(right.getClass())
+                || right.getClass().isAssignableFrom(left.getClass())) {
+            return left.equals(right);
+        }
+        final String l = left.toString();
+        final String r = right.toString();
+        return l != null && l.equals(r);
+    }
+
+    static int compareNumbers(Number left, Number right) {
+        return new BigDecimal(left.toString()).compareTo(new BigDecimal(right.toString()));
+    }
+
+    static Iterator<?> iterator(Object value) {
+        if (value == null) {
+            return null;
+        } else if (value instanceof Object[]) {
+            return Arrays.asList((Object[]) value).iterator();
+        } else if (value.getClass().isArray()) {
+            final List<Object> values = new ArrayList<Object>();
+            for (int i = 0; i < Array.getLength(value); i++) {
+                values.add(Array.get(value, i));
+            }
+            return values.iterator();
+        } else if (value instanceof Iterable) {
+            return ((Iterable<?>) value).iterator();
+        } else if (value instanceof Map) {
+            return ((Map<?, ?>) value).values().iterator();
+        } else if (value instanceof Iterator) {
+            return (Iterator<?>) value;
+        } else if (value instanceof Enumeration) {
+            return Collections.list((Enumeration<?>) value).iterator();
+        }
+        return null;
+    }
+
+    /**
+     * Where a compiled template finds its references: the arguments of the macros being called, and the
+     * context for everything else
+     */
+    static final class Frame {
+        private final Context context;
+        private final Map<String, Argument> args;
+        private final Frame caller;
+
+        Frame(Context context, Map<String, Argument> args, Frame caller) {
+            this.context = context;
+            this.args = args;
+            this.caller = caller;
+        }
+
+        Object get(String name) {
+            final Argument arg = getArgument(name);
+            return arg != null ? arg.expression.value(arg.frame) : this.context.get(name);
+        }
+
+        /**
+         * The argument of a macro being called
+         *
+         * @param name the name of the argument
+         * @return the argument, null if the name is not an argument
+         */
+        Argument getArgument(String name) {
+            for (Frame frame = this; frame != null; frame = frame.caller) {
+                if (frame.args != null && frame.args.containsKey(name)) {
+                    return frame.args.get(name);
+                }
+            }
+            return null;
+        }
+
+        void put(String name, Object value) {
+            this.context.put(name, value);
+        }
+
+        void remove(String name) {
+            this.context.remove(name);
+        }
+    }
+
+    /**
+     * An argument of a macro call, evaluated in the frame of the caller whenever the macro uses it
+     */
+    static final class Argument {
+        private final Expression expression;
+        private final String literal;
+        private final Frame frame;
+
+        Argument(Expression expression, String literal, Frame frame) {
+            this.expression = expression;
+            this.literal = literal;
+            this.frame = frame;
+        }
+    }
+
+    interface Statement {
+        void render(Frame frame, Writer writer) throws IOException;
+    }
+
+    interface Expression {
+        Object value(Frame frame);
+    }
+
+    interface Condition {
+        boolean evaluate(Frame frame);
+    }
+
+    private static class Text implements Statement {
+        private final String text;
+
+        Text(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public void render(Frame frame, Writer writer) throws IOException {
+            writer.write(this.text);
+        }
+    }
+
+    private static class Sequence implements Statement {
+        private final Statement[] statements;
+
+        Sequence(Statement[] statements) {
+            this.statements = statements;
+        }
+
+        @Override
+        public void render(Frame frame, Writer writer) throws IOException {
+            for (Statement statement : this.statements) {
+                statement.render(frame, writer);
+            }
+        }
+    }
+
+    private static class ReferenceOutput implements Statement {
+        private final Reference reference;
+        private final String literal;
+        private final boolean quiet;
+
+        ReferenceOutput(Reference reference, String literal, boolean quiet) {
+            this.reference = reference;
+            this.literal = literal;
+            this.quiet = quiet;
+        }
+
+        @Override
+        public void render(Frame frame, Writer writer) throws IOException {
+            final Object value = this.reference.value(frame);
+            final String text = value != null ? value.toString() : null;
+            if (text != null) {
+                writer.write(text);
+            } else if (!this.quiet) {
+                writer.write(this.literal);
+            }
+        }
+    }
+
+    /**
+     * A plain <code>$arg</code> in a macro, which renders the literal of the caller when it is null
+     */
+    private static class ArgumentOutput implements Statement {
+        private final String name;
+        private final boolean quiet;
+
+        ArgumentOutput(String name, boolean quiet) {
+            this.name = name;
+            this.quiet = quiet;
+        }
+
+        @Override
+        public void render(Frame frame, Writer writer) throws IOException {
+            final Argument arg = frame.getArgument(this.name);
+            final Object value = arg.expression.value(arg.frame);
+            final String text = value != null ? value.toString() : null;
+            if (text != null) {
+                writer.write(text);
+            } else if (!this.quiet) {
+                writer.write(arg.literal);
+            }
+        }
+    }
+
+    private static class Assignment implements Statement {
+        private final String name;
+        private final Expression value;
+
+        Assignment(String name, Expression value) {
+            this.name = name;
+            this.value = value;
+        }
+
+        @Override
+        public void render(Frame frame, Writer writer) {
+            final Object result = this.value.value(frame);
+            //like velocity, a null leaves the reference as it was
+            if (result != null) {
+                frame.put(this.name, result);
+            }
+        }
+    }
+
+    private static class If implements Statement {
+        private final Condition[] conditions;
+        private final Statement[] blocks;
+
+        If(Condition[] conditions, Statement[] blocks) {
+            this.conditions = conditions;
+            this.blocks = blocks;
+        }
+
+        @Override
+        public void render(Frame frame, Writer writer) throws IOException {
+            for (int i = 0; i < this.conditions.length; i++) {
+                if (this.conditions[i] == null || this.conditions[i].evaluate(frame)) {
+                    this.blocks[i].render(frame, writer);
+                    return;
+                }
+            }
+        }
+    }
+
+    private static class Foreach implements Statement {
+        private final String name;
+        private final String counterName;
+        private final String hasNextName;
+        private final int counterInitialValue;
+        private final Expression list;
+        private final Statement body;
+
+        Foreach(String name, String counterName, String hasNextName, int counterInitialValue, Expression list,
+                Statement body) {
+            this.name = name;
+            this.counterName = counterName;
+            this.hasNextName = hasNextName;
+            this.counterInitialValue = counterInitialValue;
+            this.list = list;
+            this.body = body;
+        }
+
+        @Override
+        public void render(Frame frame, Writer writer) throws IOException {
+            final Iterator<?> iterator = iterator(this.list.value(frame));
+            if (iterator == null) {
+                return;
+            }
+            final Object saved = frame.get(this.name);
+            final Object savedCounter = frame.get(this.counterName);
+            final Object savedHasNext = frame.get(this.hasNextName);
+            int counter = this.counterInitialValue;
+            while (iterator.hasNext()) {
+                frame.put(this.counterName, counter);
+                final Object value = iterator.next();
+                frame.put(this.hasNextName, iterator.hasNext());
+                frame.put(this.name, value);
+                this.body.render(frame, writer);
+                counter++;
+            }
+            restore(frame, this.counterName, savedCounter);
+            restore(frame, this.hasNextName, savedHasNext);
+            restore(frame, this.name, saved);
+        }
+
+        private static void restore(Frame frame, String name, Object value) {
+            if (value != null) {
+                frame.put(name, value);
+            } else {
+                frame.remove(name);
+            }
+        }
+    }
+
+    private static class Macro {
+        private final String[] argNames;
+        private Statement body;
+
+        Macro(String[] argNames) {
+            this.argNames = argNames;
+        }
+    }
+
+    private static class MacroCall implements Statement {
+        private final Macro macro;
+        private final Expression[] args;
+        private final String[] literals;
+
+        MacroCall(Macro macro, Expression[] args, String[] literals) {
+            this.macro = macro;
+            this.args = args;
+            this.literals = literals;
+        }
+
+        @Override
+        public void render(Frame frame, Writer writer) throws IOException {
+            final Map<String, Argument> args = new HashMap<String, Argument>(this.args.length * 2);
+            for (int i = 0; i < this.args.length; i++) {
+                args.put(this.macro.argNames[i], new Argument(this.args[i], this.literals[i], frame));
+            }
+            this.macro.body.render(new Frame(frame.context, args, frame), writer);
+        }
+    }
+
+    private static class Constant implements Expression {
+        private final Object value;
+
+        Constant(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public Object value(Frame frame) {
+            return this.value;
+        }
+    }
+
+    /**
+     * A reference: a name followed by properties and method calls
+     */
+    private static class Reference implements Expression {
+        private final String root;
+        private final Access[] chain;
+        private final String templateName;
+        private final int line;
+        private final int column;
+
+        Reference(String root, Access[] chain, String templateName, int line, int column) {
+            this.root = root;
+            this.chain = chain;
+            this.templateName = templateName;
+            this.line = line;
+            this.column = column;
+        }
+
+        @Override
+        public Object value(Frame frame) {
+            Object value = frame.get(this.root);
+            for (Access access : this.chain) {
+                if (value == null) {
+                    return null;
+                }
+                try {
+                    value = access.get(value, frame);
+                } catch (InvocationTargetException e) {
+                    throw new VelocityException(String.format("Invocation of %s in %s[line %d, column %d] threw %s",
+                            access, this.templateName, this.line, this.column, e.getCause()), e.getCause());
+                } catch (IllegalAccessException e) {
+                    throw new VelocityException(String.format("%s in %s[line %d, column %d] is not accessible",
+                            access, this.templateName, this.line, this.column), e);
+                }
+            }
+            return value;
+        }
+    }
+
+    /**
+     * One step of a reference. It remembers what it found for the classes it has seen, so the lookup
+     * only happens the first time.
+     */
+    private abstract static class Access {
+        abstract Object get(Object target, Frame frame) throws InvocationTargetException, IllegalAccessException;
+    }
+
+    private static class PropertyAccess extends Access {
+        private final String property;
+        private final Map<Class<?>, Getter> getters = new ConcurrentHashMap<Class<?>, Getter>();
+
+        PropertyAccess(String property) {
+            this.property = property;
+        }
+
+        @Override
+        Object get(Object target, Frame frame) throws InvocationTargetException, IllegalAccessException {
+            Getter getter = this.getters.get(target.getClass());
+            if (getter == null) {
+                getter = Getter.find(target.getClass(), this.property);
+                this.getters.put(target.getClass(), getter);
+            }
+            return getter.get(target);
+        }
+
+        @Override
+        public String toString() {
+            return "." + this.property;
+        }
+    }
+
+    /**
+     * Reads a property the way velocity's introspection does
+     */
+    static class Getter {
+        static final Getter NONE = new Getter(null, null);
+
+        private final Method method;
+        /**
+         * the key for get(String) and Map.get, null for a getter method
+         */
+        private final String key;
+        private final ModelAccessors.Accessor accessor;
+
+        Getter(Method method, String key) {
+            this.method = method;
+            this.key = key;
+            this.accessor = null;
+        }
+
+        Getter(ModelAccessors.Accessor accessor) {
+            this.method = null;
+            this.key = null;
+            this.accessor = accessor;
+        }
+
+        Object get(Object target) throws InvocationTargetException, IllegalAccessException {
+            if (this.accessor != null) {
+                return this.accessor.get(target);
+            } else if (this.method == null) {
+                return this.key != null ? ((Map<?, ?>) target).get(this.key) : null;
+            }
+            return this.key != null ? this.method.invoke(target, this.key) : this.method.invoke(target);
+        }
+
+        static Getter find(Class<?> type, String property) {
+            final ModelAccessors.Accessor accessor = ModelAccessors.getProperty(type, property);
+            if (accessor != null) {
+                return new Getter(accessor);
+            }
+            Method method = findPublicMethod(type, "get" + property);
+            if (method == null) {
+                method = findPublicMethod(type, "get" + flipFirst(property));
+            }
+            if (method != null) {
+                return new Getter(method, null);
+            }
+            if (Map.class.isAssignableFrom(type)) {
+                return new Getter(null, property);
+            }
+            method = findPublicMethod(type, "get", String.class);
+            if (method == null) {
+                method = findPublicMethod(type, "get", Object.class);
+            }
+            if (method != null) {
+                return new Getter(method, property);
+            }
+            method = findPublicMethod(type, "is" + property);
+            if (method == null) {
+                method = findPublicMethod(type, "is" + flipFirst(property));
+            }
+            if (method != null && (method.getReturnType() == boolean.class || method.getReturnType() == Boolean.class)) {
+                return new Getter(method, null);
+            }
+            return NONE;
+        }
+
+        private static String flipFirst(String property) {
+            if (property.length() == 0) {
+                return property;
+            }
+            final char c = property.charAt(0);
+            return (Character.isLowerCase(c) ? Character.toUpperCase(c) : Character.toLowerCase(c)) + property.substring(1);
+        }
+    }
+
+    private static class MethodAccess extends Access {
+        private final String name;
+        private final Expression[] args;
+        private final Map<Class<?>, Method[]> candidates = new ConcurrentHashMap<Class<?>, Method[]>();
+
+        MethodAccess(String name, Expression[] args) {
+            this.name = name;
+            this.args = args;
+        }
+
+        @Override
+        Object get(Object target, Frame frame) throws InvocationTargetException, IllegalAccessException {
+            final Object[] values = new Object[this.args.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = this.args[i].value(frame);
+            }
+            final ModelAccessors.Invoker invoker = ModelAccessors.getMethod(target.getClass(), this.name, values);
+            if (invoker != null) {
+                return invoker.invoke(target, values);
+            }
+            Method[] methods = this.candidates.get(target.getClass());
+            if (methods == null) {
+                methods = findPublicMethods(target.getClass(), this.name, values.length);
+                this.candidates.put(target.getClass(), methods);
+            }
+            final Method method = methods.length == 1 && isApplicable(methods[0], values) ? methods[0] :
+                    mostSpecific(methods, values);
+            //velocity also comes back with null when there is no such method
+            return method != null ? method.invoke(target, values) : null;
+        }
+
+        @Override
+        public String toString() {
+            return "." + this.name + "()";
+        }
+    }
+
+    /**
+     * Find the method by its exact parameters, as declared by a public class or interface so it may be
+     * called even if the class of the object is not public
+     */
+    static Method findPublicMethod(Class<?> type, String name, Class<?>... parameterTypes) {
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            if (Modifier.isPublic(c.getModifiers())) {
+                try {
+                    return c.getMethod(name, parameterTypes);
+                } catch (NoSuchMethodException e) {
+                    return null;
+                }
+            }
+            for (Class<?> i : c.getInterfaces()) {
+                final Method method = findPublicMethod(i, name, parameterTypes);
+                if (method != null) {
+                    return method;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Method[] findPublicMethods(Class<?> type, String name, int parameterCount) {
+        final List<Method> methods = new ArrayList<Method>();
+        for (Method method : type.getMethods()) {
+            if (method.getName().equals(name) && method.getParameterTypes().length == parameterCount) {
+                final Method callable = findPublicMethod(type, name, method.getParameterTypes());
+                if (callable != null && !methods.contains(callable)) {
+                    methods.add(callable);
+                }
+            }
+        }
+        return methods.toArray(new Method[methods.size()]);
+    }
+
+    private static Method mostSpecific(Method[] methods, Object[] values) {
+        Method best = null;
+        for (Method method : methods) {
+            if (isApplicable(method, values) && (best == null || isMoreSpecific(method, best))) {
+                best = method;
+            }
+        }
+        return best;
+    }
+
+    private static boolean isApplicable(Method method, Object[] values) {
+        final Class<?>[] parameterTypes = method.getParameterTypes();
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null ? parameterTypes[i].isPrimitive() :
+                    !isConvertible(parameterTypes[i], values[i].getClass())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isMoreSpecific(Method method, Method other) {
+        final Class<?>[] types = method.getParameterTypes();
+        final Class<?>[] otherTypes = other.getParameterTypes();
+        for (int i = 0; i < types.length; i++) {
+            if (!isConvertible(otherTypes[i], types[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final Map<Class<?>, Class<?>> PRIMITIVES = new HashMap<Class<?>, Class<?>>();
+    private static final Map<Class<?>, List<Class<?>>> WIDENING = new HashMap<Class<?>, List<Class<?>>>();
+
+    static {
+        PRIMITIVES.put(Boolean.class, boolean.class);
+        PRIMITIVES.put(Character.class, char.class);
+        PRIMITIVES.put(Byte.class, byte.class);
+        PRIMITIVES.put(Short.class, short.class);
+        PRIMITIVES.put(Integer.class, int.class);
+        PRIMITIVES.put(Long.class, long.class);
+        PRIMITIVES.put(Float.class, float.class);
+        PRIMITIVES.put(Double.class, double.class);
+        WIDENING.put(byte.class, Arrays.<Class<?>>asList(short.class, int.class, long.class, float.class, double.class));
+        WIDENING.put(short.class, Arrays.<Class<?>>asList(int.class, long.class, float.class, double.class));
+        WIDENING.put(char.class, Arrays.<Class<?>>asList(int.class, long.class, float.class, double.class));
+        WIDENING.put(int.class, Arrays.<Class<?>>asList(long.class, float.class, double.class));
+        WIDENING.put(long.class, Arrays.<Class<?>>asList(float.class, double.class));
+        WIDENING.put(float.class, Arrays.<Class<?>>asList(double.class));
+    }
+
+    /**
+     * True if a value of the type may be passed for the parameter, unboxing and widening as reflection does
+     */
+    private static boolean isConvertible(Class<?> parameterType, Class<?> type) {
+        if (parameterType.isAssignableFrom(type)) {
+            return true;
+        }
+        if (parameterType.isPrimitive()) {
+            final Class<?> primitive = type.isPrimitive() ? type : PRIMITIVES.get(type);
+            if (primitive == null) {
+                return false;
+            }
+            final List<Class<?>> widening = WIDENING.get(primitive);
+            return primitive == parameterType || (widening != null && widening.contains(parameterType));
+        }
+        //a primitive parameter of the other method boxes to its wrapper
+        if (type.isPrimitive()) {
+            for (Map.Entry<Class<?>, Class<?>> entry : PRIMITIVES.entrySet()) {
+                if (entry.getValue() == type) {
+                    return parameterType.isAssignableFrom(entry.getKey());
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The template uses something we don't compile
+     */
+    private static class Unsupported extends Exception {
+        Unsupported(String message) {
+            super(message);
+        }
+    }
+}
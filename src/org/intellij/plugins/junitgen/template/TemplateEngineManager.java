@@ -0,0 +1,278 @@
+package org.intellij.plugins.junitgen.template;
+
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import org.apache.velocity.Template;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.RuntimeInstance;
+import org.apache.velocity.runtime.resource.util.StringResourceRepository;
+import org.apache.velocity.runtime.resource.util.StringResourceRepositoryImpl;
+import org.intellij.plugins.junitgen.util.JUnitGeneratorUtil;
+import org.intellij.plugins.junitgen.util.LogAdapter;
+
+import java.io.StringReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a single initialized velocity runtime for the application. Initializing the runtime sets up the
+ * parser pool, resource manager and velocimacro factory, so we only want to pay for that once.
+ * <p>Templates are parsed once and cached by template key and content hash. Each version of a template is
+ * registered in the string repository under its own name, so a changed template never requires a new
+ * runtime; it simply compiles to a new cache entry.</p>
+ *
+ * @author agent
+ * @since 10/17/26 7:05 PM
+ */
+public class TemplateEngineManager {
+
+    private static final Logger log = JUnitGeneratorUtil.getLogger(TemplateEngineManager.class);
+
+    private static final String REPOSITORY_NAME = "JUnitGenerator";
+    private static final String TEMPLATE_NAME_PREFIX = "junitgenerator.";
+    private static final String TEMPLATE_NAME_SUFFIX = ".vm";
+    private static final String PROFILE_NAME_PREFIX = "junitgenerator.profile.";
+    private static final String DETACHED_NAME_PREFIX = "junitgenerator.detached.";
+    private static final int MAX_CACHED_TEMPLATES = 32;
+
+    private final LogAdapter logAdapter = new LogAdapter();
+    private RuntimeInstance runtime;
+    private StringResourceRepository repository;
+    /**
+     * numbers the templates parsed outside the cache, so their macros never share a namespace. Renders of
+     * the same template may overlap, and one must not drop the macros another is still using.
+     */
+    private final AtomicLong detachedCount = new AtomicLong();
+
+    /**
+     * compiled templates by resource name, oldest first so the editor preview can't grow this forever
+     */
+    private final Map<String, CompiledTemplate> compiledTemplates =
+            new LinkedHashMap<String, CompiledTemplate>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CompiledTemplate> eldest) {
+                    if (size() > MAX_CACHED_TEMPLATES) {
+                        if (repository != null) {
+                            repository.removeStringResource(eldest.getKey());
+                        }
+                        if (runtime != null) {
+                            //the macros a template defines live in a namespace of its own
+                            runtime.dumpVMNamespace(eldest.getKey());
+                        }
+                        return true;
+                    }
+                    return false;
+                }
+            };
+
+    /**
+     * Return the application instance from the service manager
+     *
+     * @return the manager
+     */
+    public static TemplateEngineManager getInstance() {
+        return ServiceManager.getService(TemplateEngineManager.class);
+    }
+
+    /**
+     * The name a version of the template is registered under in the string repository
+     *
+     * @param templateKey the template key from the settings
+     * @param content     the template text
+     * @return the resource name
+     */
+    public static String getTemplateName(String templateKey, String content) {
+        return TEMPLATE_NAME_PREFIX + templateKey + '.' + Integer.toHexString(content.hashCode()) + TEMPLATE_NAME_SUFFIX;
+    }
+
+    /**
+     * Return the compiled template for the key from the templates. This is a cache lookup unless the
+     * template was never compiled, which only happens if the settings were not validated first.
+     *
+     * @param templates   the templates from the settings
+     * @param templateKey the key of the template we want
+     * @return the compiled template
+     * @throws Exception when the template is missing or cannot be parsed
+     */
+    public CompiledTemplate getTemplate(Map<String, String> templates, String templateKey) throws Exception {
+        final String content = templates.get(templateKey);
+        if (content == null) {
+            throw new IllegalArgumentException(String.format("There is no template named '%s'", templateKey));
+        }
+        return compile(templateKey, content);
+    }
+
+    /**
+     * Parse the template unless this exact content was parsed before
+     *
+     * @param templateKey the key of the template
+     * @param content     the template text
+     * @return the compiled template
+     * @throws Exception when the template cannot be parsed
+     */
+    public synchronized CompiledTemplate compile(String templateKey, String content) throws Exception {
+        final String name = getTemplateName(templateKey, content);
+        CompiledTemplate compiled = this.compiledTemplates.get(name);
+        if (compiled == null || !compiled.isCompiledFrom(content)) {
+            final RuntimeInstance ri = getRuntime();
+            this.repository.putStringResource(name, content);
+            final Template template;
+            try {
+                template = ri.getTemplate(name);
+            } catch (Exception e) {
+                this.repository.removeStringResource(name);
+                throw e;
+            }
+            compiled = new CompiledTemplate(templateKey, content, template, ri);
+            this.compiledTemplates.put(name, compiled);
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("Compiled template %s, %s", name, compiled.getRequirements()));
+            }
+        }
+        return compiled;
+    }
+
+    /**
+     * Parse a version of the template that is used once and then thrown away, such as the one the editor
+     * preview renders. It stays out of the cache so it can't push the templates of the settings out.
+     * Call {@link #releaseDetached(CompiledTemplate)} when done with it.
+     *
+     * @param templateKey the key of the template
+     * @param content     the template text
+     * @return the compiled template
+     * @throws Exception when the template cannot be parsed
+     */
+    public CompiledTemplate compileDetached(String templateKey, String content) throws Exception {
+        final RuntimeInstance ri = getRuntime();
+        final String name = DETACHED_NAME_PREFIX + templateKey + '.' + this.detachedCount.incrementAndGet()
+                + TEMPLATE_NAME_SUFFIX;
+        final Template template = new Template();
+        template.setRuntimeServices(ri);
+        template.setName(name);
+        try {
+            template.setData(ri.parse(new StringReader(content), name));
+            template.initDocument();
+        } catch (Exception e) {
+            ri.dumpVMNamespace(name);
+            throw e;
+        }
+        return new CompiledTemplate(templateKey, content, template, ri);
+    }
+
+    /**
+     * Drop the macros a template from {@link #compileDetached(String, String)} registered
+     *
+     * @param template the template
+     */
+    public void releaseDetached(CompiledTemplate template) {
+        getRuntime().dumpVMNamespace(template.getTemplate().getName());
+    }
+
+    /**
+     * Parse the template into a tree of its own that is never cached, so it can be instrumented without
+     * touching the compiled template. Call {@link #releaseProfiling(Template)} when done with it.
+     *
+     * @param templateKey the key of the template
+     * @param content     the template text
+     * @return the parsed and initialized template
+     * @throws Exception when the template cannot be parsed
+     */
+    public Template parseForProfiling(String templateKey, String content) throws Exception {
+        final RuntimeInstance ri = getRuntime();
+        final String name = PROFILE_NAME_PREFIX + templateKey + '.' + this.detachedCount.incrementAndGet()
+                + TEMPLATE_NAME_SUFFIX;
+        final Template template = new Template();
+        template.setRuntimeServices(ri);
+        template.setName(name);
+        template.setData(ri.parse(new StringReader(content), name));
+        template.initDocument();
+        return template;
+    }
+
+    /**
+     * Drop the macros the profiling copy of a template registered
+     *
+     * @param template the template from {@link #parseForProfiling(String, String)}
+     */
+    public void releaseProfiling(Template template) {
+        getRuntime().dumpVMNamespace(template.getName());
+    }
+
+    /**
+     * Compile every template and collect the problems we ran into
+     *
+     * @param templates the templates by key
+     * @return the error message for each template that failed, empty if all of them compiled
+     */
+    public Map<String, String> compileAll(Map<String, String> templates) {
+        final Map<String, String> errors = new LinkedHashMap<String, String>();
+        for (Map.Entry<String, String> entry : templates.entrySet()) {
+            if (entry.getValue() == null) {
+                continue;
+            }
+            try {
+                compile(entry.getKey(), entry.getValue());
+            } catch (Exception e) {
+                errors.put(entry.getKey(), e.getMessage() != null ? e.getMessage() : e.toString());
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * Return the initialized runtime, creating it on first use
+     *
+     * @return the runtime
+     */
+    public synchronized RuntimeInstance getRuntime() {
+        if (this.runtime == null) {
+            this.runtime = createRuntime();
+        }
+        return this.runtime;
+    }
+
+    /**
+     * The adapter velocity logs through, which also counts the messages it sees
+     *
+     * @return the log adapter
+     */
+    public LogAdapter getLogAdapter() {
+        return this.logAdapter;
+    }
+
+    /**
+     * Drop the current runtime and everything compiled with it so the next request starts fresh
+     */
+    public synchronized void invalidate() {
+        if (this.runtime != null && log.isDebugEnabled()) {
+            log.debug("Invalidating the velocity runtime");
+        }
+        this.runtime = null;
+        this.repository = null;
+        this.compiledTemplates.clear();
+    }
+
+    private RuntimeInstance createRuntime() {
+        final RuntimeInstance ri = new RuntimeInstance();
+        //use the 'string' resource loader because the template comes from a 'string'
+        ri.setProperty(RuntimeConstants.RESOURCE_LOADER, "string");
+        ri.setProperty("string.resource.loader.class", "org.apache.velocity.runtime.resource.loader.StringResourceLoader");
+        ri.setProperty("string.resource.loader.repository.class", "org.apache.velocity.runtime.resource.loader.StringResourceRepositoryImpl");
+        ri.setProperty("string.resource.loader.repository.static", "false");
+        ri.setProperty("string.resource.loader.repository.name", REPOSITORY_NAME);
+        //templates may define their own macros (older ones have #cap), so keep them from colliding in the shared runtime
+        ri.setProperty(RuntimeConstants.VM_PERM_INLINE_LOCAL, "true");
+        //our model is read through a table of direct accessors instead of reflection
+        ri.setProperty(RuntimeConstants.UBERSPECT_CLASSNAME, ModelUberspect.class.getName());
+        //set our custom log adapter
+        ri.setProperty(RuntimeConstants.RUNTIME_LOG_LOGSYSTEM, this.logAdapter);
+
+        //manage the repository, the templates go in as they are compiled
+        this.repository = new StringResourceRepositoryImpl();
+        ri.setApplicationAttribute(REPOSITORY_NAME, this.repository);
+        ri.init();
+        log.debug("Initialized the velocity runtime");
+        return ri;
+    }
+}
@@ -0,0 +1,336 @@
+package org.intellij.plugins.junitgen.template;
+
+import org.apache.velocity.Template;
+import org.apache.velocity.context.Context;
+import org.apache.velocity.context.InternalContextAdapter;
+import org.apache.velocity.exception.MethodInvocationException;
+import org.apache.velocity.exception.ParseErrorException;
+import org.apache.velocity.exception.ResourceNotFoundException;
+import org.apache.velocity.runtime.parser.Token;
+import org.apache.velocity.runtime.parser.node.ASTBlock;
+import org.apache.velocity.runtime.parser.node.ASTComment;
+import org.apache.velocity.runtime.parser.node.ASTDirective;
+import org.apache.velocity.runtime.parser.node.ASTIfStatement;
+import org.apache.velocity.runtime.parser.node.ASTReference;
+import org.apache.velocity.runtime.parser.node.ASTSetDirective;
+import org.apache.velocity.runtime.parser.node.ASTText;
+import org.apache.velocity.runtime.parser.node.ASTprocess;
+import org.apache.velocity.runtime.parser.node.Node;
+import org.apache.velocity.runtime.parser.node.SimpleNode;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Times the statements of a template while it is merged. Every directive, reference and <code>#if</code>
+ * in the body of the template or of a block (<code>#foreach</code>, <code>#macro</code>, ...) is replaced
+ * with a node that counts its calls and measures its time, both including and excluding the statements
+ * nested in it.
+ * <p>The nodes are replaced in place, so only instrument a template that was parsed for this purpose and
+ * is never cached; see {@link TemplateEngineManager#parseForProfiling(String, String)}. A profiler is
+ * meant for a single thread.</p>
+ *
+ * @author agent
+ * @since 10/17/26 7:25 PM
+ */
+public class TemplateProfiler {
+
+    private static final int MAX_REPORTED = 20;
+    private static final int MAX_LABEL_LENGTH = 40;
+
+    private final String templateKey;
+    private final List<Hotspot> hotspots = new ArrayList<Hotspot>();
+    /**
+     * the time spent in nested statements, one entry per statement being rendered
+     */
+    private final LinkedList<long[]> frames = new LinkedList<long[]>();
+    private long totalNanos;
+
+    private TemplateProfiler(String templateKey) {
+        this.templateKey = templateKey;
+    }
+
+    /**
+     * Replace the statements of the template with timed ones
+     *
+     * @param templateKey the key of the template, for the report
+     * @param template    a template that was parsed for profiling
+     * @return the profiler collecting the timings
+     */
+    public static TemplateProfiler instrument(String templateKey, Template template) {
+        final TemplateProfiler profiler = new TemplateProfiler(templateKey);
+        final Object data = template.getData();
+        if (data instanceof Node) {
+            profiler.instrument((Node) data);
+        }
+        return profiler;
+    }
+
+    /**
+     * Merge the template and record how long the whole merge took
+     *
+     * @param template the instrumented template
+     * @param context  the context
+     * @param writer   the output
+     * @throws Exception when the merge fails
+     */
+    public void merge(Template template, Context context, Writer writer) throws Exception {
+        final long start = System.nanoTime();
+        try {
+            template.merge(context, writer);
+        } finally {
+            this.totalNanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * The statements that were rendered at least once, the most expensive (excluding nested statements) first
+     *
+     * @return the hotspots
+     */
+    public List<Hotspot> getHotspots() {
+        final List<Hotspot> rendered = new ArrayList<Hotspot>();
+        for (Hotspot hotspot : this.hotspots) {
+            if (hotspot.getCalls() > 0) {
+                rendered.add(hotspot);
+            }
+        }
+        Collections.sort(rendered, new Comparator<Hotspot>() {
+            @Override
+            public int compare(Hotspot o1, Hotspot o2) {
+                return o1.getSelfNanos() < o2.getSelfNanos() ? 1 : o1.getSelfNanos() > o2.getSelfNanos() ? -1 : 0;
+            }
+        });
+        return rendered;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * A plain text report of the most expensive statements and lines
+     *
+     * @return the report
+     */
+    public String getReport() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Template '%s' merged in %.3f ms%n%n", this.templateKey, millis(this.totalNanos)));
+
+        final List<Hotspot> rendered = getHotspots();
+        sb.append(String.format("Hotspots%n%6s %5s %8s %10s %10s  %s%n", "line", "col", "calls", "total ms", "self ms", "statement"));
+        for (Hotspot hotspot : rendered.subList(0, Math.min(MAX_REPORTED, rendered.size()))) {
+            sb.append(String.format("%6d %5d %8d %10.3f %10.3f  %s%n", hotspot.getLine(), hotspot.getColumn(),
+                    hotspot.getCalls(), millis(hotspot.getTotalNanos()), millis(hotspot.getSelfNanos()),
+                    hotspot.getLabel()));
+        }
+
+        //the self time of a line is the sum of the statements on it
+        final Map<Integer, long[]> lines = new TreeMap<Integer, long[]>();
+        for (Hotspot hotspot : rendered) {
+            long[] line = lines.get(hotspot.getLine());
+            if (line == null) {
+                line = new long[2];
+                lines.put(hotspot.getLine(), line);
+            }
+            line[0] += hotspot.getCalls();
+            line[1] += hotspot.getSelfNanos();
+        }
+        final List<Map.Entry<Integer, long[]>> sortedLines = new ArrayList<Map.Entry<Integer, long[]>>(lines.entrySet());
+        Collections.sort(sortedLines, new Comparator<Map.Entry<Integer, long[]>>() {
+            @Override
+            public int compare(Map.Entry<Integer, long[]> o1, Map.Entry<Integer, long[]> o2) {
+                return o1.getValue()[1] < o2.getValue()[1] ? 1 : o1.getValue()[1] > o2.getValue()[1] ? -1 : 0;
+            }
+        });
+        sb.append(String.format("%nLines%n%6s %8s %10s%n", "line", "calls", "self ms"));
+        for (Map.Entry<Integer, long[]> line : sortedLines.subList(0, Math.min(MAX_REPORTED, sortedLines.size()))) {
+            sb.append(String.format("%6d %8d %10.3f%n", line.getKey(), line.getValue()[0], millis(line.getValue()[1])));
+        }
+        return sb.toString();
+    }
+
+    private void instrument(Node node) {
+        final boolean statements = node instanceof ASTprocess || node instanceof ASTBlock;
+        for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+            final Node child = node.jjtGetChild(i);
+            instrument(child);
+            if (statements && !(child instanceof ASTText) && !(child instanceof ASTComment)) {
+                final Hotspot hotspot = new Hotspot(labelOf(child), child.getLine(), child.getColumn());
+                this.hotspots.add(hotspot);
+                final TimedNode timed = new TimedNode(child, hotspot);
+                timed.jjtSetParent(node);
+                node.jjtAddChild(timed, i);
+            }
+        }
+    }
+
+    private static String labelOf(Node node) {
+        final String label;
+        if (node instanceof ASTDirective) {
+            label = '#' + ((ASTDirective) node).getDirectiveName();
+        } else if (node instanceof ASTIfStatement) {
+            label = "#if";
+        } else if (node instanceof ASTSetDirective) {
+            label = "#set";
+        } else if (node instanceof ASTReference) {
+            label = node.literal();
+        } else {
+            label = node.getClass().getSimpleName();
+        }
+        return label.length() > MAX_LABEL_LENGTH ? label.substring(0, MAX_LABEL_LENGTH) + "..." : label;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1000000d;
+    }
+
+    private void enter() {
+        this.frames.addLast(new long[1]);
+    }
+
+    private void exit(Hotspot hotspot, long elapsed) {
+        final long nested = this.frames.removeLast()[0];
+        hotspot.add(elapsed, elapsed - nested);
+        if (!this.frames.isEmpty()) {
+            this.frames.getLast()[0] += elapsed;
+        }
+    }
+
+    /**
+     * The timings of one statement of the template
+     */
+    public static class Hotspot {
+        private final String label;
+        private final int line;
+        private final int column;
+        private long calls;
+        private long totalNanos;
+        private long selfNanos;
+
+        Hotspot(String label, int line, int column) {
+            this.label = label;
+            this.line = line;
+            this.column = column;
+        }
+
+        void add(long total, long self) {
+            this.calls++;
+            this.totalNanos += total;
+            this.selfNanos += self;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public int getLine() {
+            return line;
+        }
+
+        public int getColumn() {
+            return column;
+        }
+
+        public long getCalls() {
+            return calls;
+        }
+
+        /**
+         * The time including the statements nested in this one
+         *
+         * @return the nanoseconds
+         */
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        /**
+         * The time excluding the statements nested in this one
+         *
+         * @return the nanoseconds
+         */
+        public long getSelfNanos() {
+            return selfNanos;
+        }
+    }
+
+    /**
+     * Stands in for a statement and times it. Everything else goes to the statement itself.
+     */
+    private class TimedNode extends SimpleNode {
+
+        private final Node node;
+        private final Hotspot hotspot;
+
+        TimedNode(Node node, Hotspot hotspot) {
+            super(node.getType());
+            this.node = node;
+            this.hotspot = hotspot;
+        }
+
+        @Override
+        public boolean render(InternalContextAdapter context, Writer writer)
+                throws IOException, MethodInvocationException, ParseErrorException, ResourceNotFoundException {
+            enter();
+            final long start = System.nanoTime();
+            try {
+                return this.node.render(context, writer);
+            } finally {
+                exit(this.hotspot, System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public boolean evaluate(InternalContextAdapter context) throws MethodInvocationException {
+            return this.node.evaluate(context);
+        }
+
+        @Override
+        public Object value(InternalContextAdapter context) throws MethodInvocationException {
+            return this.node.value(context);
+        }
+
+        @Override
+        public Object execute(Object o, InternalContextAdapter context) throws MethodInvocationException {
+            return this.node.execute(o, context);
+        }
+
+        @Override
+        public String literal() {
+            return this.node.literal();
+        }
+
+        @Override
+        public Token getFirstToken() {
+            return this.node.getFirstToken();
+        }
+
+        @Override
+        public Token getLastToken() {
+            return this.node.getLastToken();
+        }
+
+        @Override
+        public int getLine() {
+            return this.node.getLine();
+        }
+
+        @Override
+        public int getColumn() {
+            return this.node.getColumn();
+        }
+
+        @Override
+        public String getTemplateName() {
+            return this.node.getTemplateName();
+        }
+    }
+}
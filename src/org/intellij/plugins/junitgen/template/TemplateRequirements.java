@@ -0,0 +1,178 @@
+package org.intellij.plugins.junitgen.template;
+
+import org.apache.velocity.Template;
+import org.apache.velocity.runtime.parser.node.ASTDirective;
+import org.apache.velocity.runtime.parser.node.ASTIdentifier;
+import org.apache.velocity.runtime.parser.node.ASTReference;
+import org.apache.velocity.runtime.parser.node.ASTStringLiteral;
+import org.apache.velocity.runtime.parser.node.Node;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Describes which of the expensive parts of the model a template actually uses. It is worked out once
+ * from the parsed template by collecting every reference, property and method name in it, so the model
+ * builder can skip what the template never looks at.
+ * <p>We err on the side of building too much: a name mentioned anywhere (even inside a string literal)
+ * counts as used, and a template that evaluates or includes other text is assumed to use everything.</p>
+ *
+ * @author agent
+ * @since 10/17/26 7:14 PM
+ */
+public class TemplateRequirements {
+
+    /**
+     * the requirements of a template we know nothing about, it may use anything but we can't tell if it
+     * marks its tests
+     */
+    public static final TemplateRequirements ALL = new TemplateRequirements(true, true, true, true, false);
+
+    private static final String PRIVATE_METHOD_LIST = "privatemethodlist";
+    private static final String FIELD_LIST = "fieldlist";
+    private static final String BASE = "base";
+    private static final String OVERLOADED_METHODS = "overloadedmethods";
+    private static final String BOUNDARY = "boundary";
+
+    private final boolean privateMethodsUsed;
+    private final boolean fieldsUsed;
+    private final boolean baseUsed;
+    private final boolean overloadedMethodsUsed;
+    private final boolean boundariesMarked;
+
+    TemplateRequirements(boolean privateMethodsUsed, boolean fieldsUsed, boolean baseUsed,
+                         boolean overloadedMethodsUsed, boolean boundariesMarked) {
+        this.privateMethodsUsed = privateMethodsUsed;
+        this.fieldsUsed = fieldsUsed;
+        this.baseUsed = baseUsed;
+        this.overloadedMethodsUsed = overloadedMethodsUsed;
+        this.boundariesMarked = boundariesMarked;
+    }
+
+    /**
+     * Inspect the parsed template
+     *
+     * @param template the template, already parsed
+     * @return the requirements
+     */
+    public static TemplateRequirements of(Template template) {
+        final Object data = template.getData();
+        if (!(data instanceof Node)) {
+            return ALL;
+        }
+        final Set<String> names = new HashSet<String>();
+        final StringBuilder literals = new StringBuilder();
+        if (!collect((Node) data, names, literals)) {
+            return ALL;
+        }
+        return new TemplateRequirements(isUsed(PRIVATE_METHOD_LIST, names, literals),
+                isUsed(FIELD_LIST, names, literals),
+                isUsed(BASE, names, literals),
+                isUsed(OVERLOADED_METHODS, names, literals),
+                isUsed(BOUNDARY, names, literals));
+    }
+
+    /**
+     * True if the template reads <code>$entry.privateMethodList</code>
+     *
+     * @return true if the private methods are needed
+     */
+    public boolean isPrivateMethodsUsed() {
+        return privateMethodsUsed;
+    }
+
+    /**
+     * True if the template reads <code>$entry.fieldList</code>
+     *
+     * @return true if the fields are needed
+     */
+    public boolean isFieldsUsed() {
+        return fieldsUsed;
+    }
+
+    /**
+     * True if the template reads <code>$method.base</code>
+     *
+     * @return true if the super methods are needed
+     */
+    public boolean isBaseUsed() {
+        return baseUsed;
+    }
+
+    /**
+     * True if the template reads <code>$method.overloadedMethods</code>
+     *
+     * @return true if the overloaded methods are needed
+     */
+    public boolean isOverloadedMethodsUsed() {
+        return overloadedMethodsUsed;
+    }
+
+    /**
+     * True if the template marks where each test starts with <code>$boundary</code>, so the classes of a
+     * file can be merged together and the output cut apart afterwards
+     *
+     * @return true if the output can be split
+     */
+    public boolean isBoundariesMarked() {
+        return boundariesMarked;
+    }
+
+    /**
+     * Walk the tree and collect the names
+     *
+     * @param node     the node
+     * @param names    the lower case reference, property and method names
+     * @param literals the text of the string literals
+     * @return false if the template pulls in text we can't see, so we can't tell what it uses
+     */
+    private static boolean collect(Node node, Set<String> names, StringBuilder literals) {
+        if (node instanceof ASTDirective) {
+            final String directive = ((ASTDirective) node).getDirectiveName();
+            if ("evaluate".equals(directive) || "parse".equals(directive) || "include".equals(directive)) {
+                return false;
+            }
+        } else if (node instanceof ASTReference) {
+            addName(((ASTReference) node).getRootString(), names);
+        } else if (node instanceof ASTIdentifier) {
+            //properties and, as the first child of ASTMethod, method names
+            addName(node.literal(), names);
+        } else if (node instanceof ASTStringLiteral) {
+            literals.append(node.literal().toLowerCase(Locale.ENGLISH)).append('\n');
+        }
+        for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+            if (!collect(node.jjtGetChild(i), names, literals)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void addName(String name, Set<String> names) {
+        if (name == null) {
+            return;
+        }
+        String lowerName = name.trim().toLowerCase(Locale.ENGLISH);
+        //$entry.getFieldList() reads the same property as $entry.fieldList
+        if (lowerName.startsWith("get") && lowerName.length() > 3) {
+            names.add(lowerName.substring(3));
+        }
+        names.add(lowerName);
+    }
+
+    private static boolean isUsed(String name, Set<String> names, StringBuilder literals) {
+        return names.contains(name) || literals.indexOf(name) >= 0;
+    }
+
+    @Override
+    public String toString() {
+        return "TemplateRequirements{" +
+                "privateMethodsUsed=" + privateMethodsUsed +
+                ", fieldsUsed=" + fieldsUsed +
+                ", baseUsed=" + baseUsed +
+                ", overloadedMethodsUsed=" + overloadedMethodsUsed +
+                ", boundariesMarked=" + boundariesMarked +
+                '}';
+    }
+}
@@ -10,17 +10,22 @@
  */
 package org.intellij.plugins.junitgen.ui;
 
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.*;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.options.ConfigurationException;
 import com.intellij.openapi.options.SearchableConfigurable;
 import com.intellij.openapi.project.Project;
 import com.intellij.util.xmlb.XmlSerializerUtil;
 import org.intellij.plugins.junitgen.bean.JUnitGeneratorSettings;
+import org.intellij.plugins.junitgen.template.TemplateEngineManager;
 import org.intellij.plugins.junitgen.util.JUnitGeneratorUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * JUnitGenerator configuration UI.
@@ -35,6 +40,8 @@ import javax.swing.*;
 public abstract class JUnitGeneratorConfigurable implements SearchableConfigurable,
         PersistentStateComponent<JUnitGeneratorSettings> {
 
+    private static final Logger log = JUnitGeneratorUtil.getLogger(JUnitGeneratorConfigurable.class);
+
     private JUnitGeneratorSettings settings;
     private JUnitGeneratorConfigurationPanel configuration;
     private final Project project;
@@ -150,13 +157,17 @@ public abstract class JUnitGeneratorConfigurable implements SearchableConfigurab
      */
     public void apply() throws ConfigurationException {
         getConfigurationPanel().apply();
+        JUnitGeneratorUtil.settingsChanged();
     }
 
     /**
-     * Need to release stuff that the UI created
+     * Need to release stuff that the UI created. The next createComponent builds a new panel.
      */
     public void disposeUIResources() {
-        getConfigurationPanel().release();
+        if (this.configuration != null) {
+            this.configuration.release();
+            this.configuration = null;
+        }
     }
 
     /**
@@ -180,6 +191,27 @@ public abstract class JUnitGeneratorConfigurable implements SearchableConfigurab
     public void loadState(JUnitGeneratorSettings jUnitGeneratorSettings) {
         if (this.getState() != null) {
             XmlSerializerUtil.copyBean(jUnitGeneratorSettings, this.getState());
+            JUnitGeneratorUtil.settingsChanged();
+            precompileTemplates(this.getState());
         }
     }
+
+    /**
+     * Parse the loaded templates in the background so the first generation doesn't have to
+     *
+     * @param settings the loaded settings
+     */
+    private static void precompileTemplates(final JUnitGeneratorSettings settings) {
+        final Map<String, String> templates = new HashMap<String, String>(settings.getVmTemplates());
+        ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+            @Override
+            public void run() {
+                final Map<String, String> errors = TemplateEngineManager.getInstance().compileAll(templates);
+                for (Map.Entry<String, String> error : errors.entrySet()) {
+                    log.warn(String.format(JUnitGeneratorUtil.getProperty("junit.generator.error.templateparse"),
+                            error.getKey(), error.getValue()));
+                }
+            }
+        });
+    }
 }
@@ -9,18 +9,32 @@ import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.event.DocumentAdapter;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.editor.event.DocumentListener;
 import com.intellij.openapi.fileTypes.FileTypeManager;
+import com.intellij.openapi.options.ConfigurationException;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Splitter;
 import com.intellij.psi.PsiFileFactory;
 import com.intellij.ui.UserActivityListener;
 import com.intellij.ui.UserActivityWatcher;
+import com.intellij.util.Alarm;
 import org.intellij.plugins.junitgen.bean.JUnitGeneratorSettings;
+import org.intellij.plugins.junitgen.template.TemplateEngineManager;
 import org.intellij.plugins.junitgen.util.JUnitGeneratorUtil;
 
 import javax.swing.*;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import java.awt.*;
 import java.awt.event.*;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * @author JOsborne
@@ -30,6 +44,10 @@ public class JUnitGeneratorConfigurationPanel {
 
     private static final int SETTINGS_INDEX_APP = 0;
     private static final int SETTINGS_INDEX_PRJ = 1;
+    /**
+     * how long the typing has to stop before we compare a template with the settings, in milliseconds
+     */
+    private static final int MODIFICATION_DELAY = 300;
 
     private boolean modified;
     private JPanel panel;
@@ -43,7 +61,42 @@ public class JUnitGeneratorConfigurationPanel {
     private JButton copyGobalSettingsToButton;
     private JComboBox selectedTemplateComboBox;
     private JLabel loadDefaultsLabel;
+    /**
+     * the template text lives in these documents; editors are only created for the tab on screen
+     */
+    private final Map<String, Document> templateDocuments = new LinkedHashMap<String, Document>();
+    private final Map<String, JPanel> templateTabs = new HashMap<String, JPanel>();
     private final Map<String, Editor> velocityEditorMap = new HashMap<String, Editor>();
+    private final Set<String> changedTemplates = new HashSet<String>();
+    private final Alarm modificationAlarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD);
+    /**
+     * the preview of the template on screen, only when we have a project to take classes from
+     */
+    private TemplatePreviewPanel previewPanel;
+    private final DocumentListener templateListener = new DocumentAdapter() {
+        @Override
+        public void documentChanged(DocumentEvent e) {
+            templateChanged(e.getDocument());
+        }
+    };
+    private final MouseListener editorPopupListener = new MouseAdapter() {
+        @Override
+        public void mouseReleased(MouseEvent e) {
+            if (e.isPopupTrigger()) {
+                // Single right click unless configured differently
+                ActionManager actionManager = ActionManager.getInstance();
+                DefaultActionGroup defaultActionGroup = (DefaultActionGroup) actionManager.getAction("org.intellij.plugins.junitgen.action.JUnitGeneratorEditorMenu");
+                ActionPopupMenu menu = actionManager.createActionPopupMenu("junitgenerator.editor.popup", defaultActionGroup);
+                menu.getComponent().show(e.getComponent(), e.getX(), e.getY());
+            }
+        }
+    };
+    private final ChangeListener tabListener = new ChangeListener() {
+        @Override
+        public void stateChanged(ChangeEvent e) {
+            showSelectedEditor();
+        }
+    };
     private final Project project;
     private JUnitGeneratorSettings settings;
 
@@ -93,7 +146,27 @@ public class JUnitGeneratorConfigurationPanel {
         return panel;
     }
 
-    public void apply() {
+    /**
+     * Apply the form to the settings. Every template is parsed first so the user sees syntax errors here
+     * instead of when the test is generated, and so generation only needs to merge the parsed template.
+     *
+     * @throws ConfigurationException when a template can't be parsed
+     */
+    public void apply() throws ConfigurationException {
+        final Map<String, String> vmTemplates = getVmTemplates();
+        final Map<String, String> errors = TemplateEngineManager.getInstance().compileAll(vmTemplates);
+        if (!errors.isEmpty()) {
+            final StringBuilder sb = new StringBuilder();
+            for (Map.Entry<String, String> error : errors.entrySet()) {
+                if (sb.length() > 0) {
+                    sb.append('\n');
+                }
+                sb.append(String.format(JUnitGeneratorUtil.getProperty("junit.generator.error.templateparse"),
+                        error.getKey(), error.getValue()));
+            }
+            throw new ConfigurationException(sb.toString(),
+                    JUnitGeneratorUtil.getProperty("junit.generator.error.title"));
+        }
         if (this.settings == null) {
             this.settings = new JUnitGeneratorSettings();
         }
@@ -104,7 +177,7 @@ public class JUnitGeneratorConfigurationPanel {
         this.settings.setListOverloadedMethodsBy((String) this.methodGenerationComboBox.getSelectedItem());
         this.settings.setGenerateForOverloadedMethods(this.generateForOverloadedMethodsCheckBox.isSelected());
         this.settings.getVmTemplates().clear();
-        this.settings.getVmTemplates().putAll(getVmTemplates());
+        this.settings.getVmTemplates().putAll(vmTemplates);
         this.modified = false;
         this.tabbedPane1.setVisible(this.project == null || this.settings.isUseProjectSettings());
     }
@@ -143,58 +216,125 @@ public class JUnitGeneratorConfigurationPanel {
      */
     private Map<String, String> getVmTemplates() {
         final Map<String, String> contents = new HashMap<String, String>();
-        //find all of our editors and read them back
-        for (Map.Entry<String, Editor> editorEntry : this.velocityEditorMap.entrySet()) {
-            contents.put(editorEntry.getKey(), editorEntry.getValue().getDocument().getText());
+        //read the documents back, whether or not their tab was ever opened
+        for (Map.Entry<String, Document> documentEntry : this.templateDocuments.entrySet()) {
+            contents.put(documentEntry.getKey(), documentEntry.getValue().getText());
         }
         return contents;
     }
 
-    private Editor findEditorForTab(String tabTitle) {
-        return this.velocityEditorMap.get(tabTitle);
-    }
-
+    /**
+     * Create a document and an empty tab for every template. The editor of a tab is created when the tab is
+     * shown and released when another tab is, so opening the settings doesn't build an editor per template.
+     *
+     * @param settings the settings
+     */
     private void createEditors(JUnitGeneratorSettings settings) {
         EditorFactory factory = EditorFactory.getInstance();
-        //create the editors
+        if (this.project != null) {
+            this.previewPanel = new TemplatePreviewPanel(this.project);
+        }
         for (Map.Entry<String, String> entry : settings.getVmTemplates().entrySet()) {
             final Document velocityTemplate = factory.createDocument(entry.getValue() != null ? entry.getValue() : "");
-            try {
-                final Editor editor =
-                        factory.createEditor(velocityTemplate, this.project, FileTypeManager.getInstance().getFileTypeByExtension("vm"), false);
-                editor.getContentComponent().addKeyListener(new KeyAdapter() {
-                    @Override
-                    public void keyReleased(KeyEvent e) {
-                        modified = true;
-                    }
-                });
-                editor.getContentComponent().addMouseListener(new MouseAdapter() {
-                    @Override
-                    public void mouseReleased(MouseEvent e) {
-                        if (e.isPopupTrigger()) {
-                            // Single right click unless configured differently
-                            ActionManager actionManager = ActionManager.getInstance();
-                            DefaultActionGroup defaultActionGroup = (DefaultActionGroup) actionManager.getAction("org.intellij.plugins.junitgen.action.JUnitGeneratorEditorMenu");
-                            ActionPopupMenu menu = actionManager.createActionPopupMenu("junitgenerator.editor.popup", defaultActionGroup);
-                            menu.getComponent().show(e.getComponent(), e.getX(), e.getY());
-                        }
-                    }
-                });
-                this.velocityEditorMap.put(entry.getKey(), editor);
-                this.tabbedPane1.addTab(entry.getKey(), editor.getComponent());
-            } catch (Exception e) {
-                Logger.getInstance(JUnitGeneratorConfigurationPanel.class).warn(e);
+            velocityTemplate.addDocumentListener(this.templateListener);
+            final JPanel tab = new JPanel(new BorderLayout());
+            this.templateDocuments.put(entry.getKey(), velocityTemplate);
+            this.templateTabs.put(entry.getKey(), tab);
+            this.tabbedPane1.addTab(entry.getKey(), tab);
+        }
+        this.tabbedPane1.addChangeListener(this.tabListener);
+        showSelectedEditor();
+    }
+
+    /**
+     * Make sure the selected template tab has its editor and no other tab holds on to one
+     */
+    private void showSelectedEditor() {
+        final Component selected = this.tabbedPane1.getSelectedComponent();
+        for (Map.Entry<String, JPanel> tab : this.templateTabs.entrySet()) {
+            if (tab.getValue() == selected) {
+                if (!this.velocityEditorMap.containsKey(tab.getKey())) {
+                    createEditor(tab.getKey(), tab.getValue());
+                }
+            } else {
+                releaseEditor(tab.getKey());
+            }
+        }
+    }
+
+    private void createEditor(String templateKey, JPanel tab) {
+        try {
+            final Editor editor = EditorFactory.getInstance().createEditor(this.templateDocuments.get(templateKey),
+                    this.project, FileTypeManager.getInstance().getFileTypeByExtension("vm"), false);
+            editor.getContentComponent().addMouseListener(this.editorPopupListener);
+            this.velocityEditorMap.put(templateKey, editor);
+            if (this.previewPanel != null) {
+                //the preview moves along to the tab on screen
+                final Splitter splitter = new Splitter(false);
+                splitter.setFirstComponent(editor.getComponent());
+                splitter.setSecondComponent(this.previewPanel.getComponent());
+                tab.add(splitter, BorderLayout.CENTER);
+                this.previewPanel.setTemplate(templateKey, editor.getDocument().getText());
+            } else {
+                tab.add(editor.getComponent(), BorderLayout.CENTER);
+            }
+            tab.revalidate();
+        } catch (Exception e) {
+            Logger.getInstance(JUnitGeneratorConfigurationPanel.class).warn(e);
+        }
+    }
+
+    private void releaseEditor(String templateKey) {
+        final Editor editor = this.velocityEditorMap.remove(templateKey);
+        if (editor != null) {
+            editor.getContentComponent().removeMouseListener(this.editorPopupListener);
+            this.templateTabs.get(templateKey).removeAll();
+            EditorFactory.getInstance().releaseEditor(editor);
+        }
+    }
+
+    /**
+     * A template changed. Comparing it with the settings waits until the typing stops.
+     *
+     * @param document the document of the template
+     */
+    private void templateChanged(Document document) {
+        for (Map.Entry<String, Document> entry : this.templateDocuments.entrySet()) {
+            if (entry.getValue() == document) {
+                this.changedTemplates.add(entry.getKey());
+                if (this.previewPanel != null && this.velocityEditorMap.containsKey(entry.getKey())) {
+                    this.previewPanel.setTemplate(entry.getKey(), document.getText());
+                }
             }
         }
+        this.modificationAlarm.cancelAllRequests();
+        this.modificationAlarm.addRequest(new Runnable() {
+            @Override
+            public void run() {
+                checkChangedTemplates();
+            }
+        }, MODIFICATION_DELAY);
+    }
 
+    /**
+     * Mark us modified if one of the changed templates differs from the settings
+     */
+    private void checkChangedTemplates() {
+        for (String templateKey : this.changedTemplates) {
+            final String text = this.templateDocuments.get(templateKey).getText();
+            if (this.settings == null || !text.equals(this.settings.getTemplate(templateKey))) {
+                this.modified = true;
+            }
+        }
+        this.changedTemplates.clear();
     }
 
     private void updateTemplateEditors(Map<String, String> templates) {
         //just update them
         for (Map.Entry<String, String> entry : templates.entrySet()) {
-            //grab the components and replace the content since the editor was already built
-            final Editor editor = findEditorForTab(entry.getKey());
-            if (editor != null) {
+            //replace the content of the document, the editor (if there is one) follows it
+            final Document document = this.templateDocuments.get(entry.getKey());
+            if (document != null) {
                 final String text = entry.getValue();
                 ApplicationManager.getApplication().invokeLater(new Runnable() {
                     @Override
@@ -203,7 +343,7 @@ public class JUnitGeneratorConfigurationPanel {
                                 .runWriteAction(new Runnable() {
                                     @Override
                                     public void run() {
-                                        editor.getDocument().setText(text);
+                                        document.setText(text);
                                     }
                                 });
                     }
@@ -249,18 +389,35 @@ public class JUnitGeneratorConfigurationPanel {
      * @return true if modified
      */
     public boolean isModified() {
+        if (!this.changedTemplates.isEmpty()) {
+            //don't make the dialog wait for the typing to stop
+            this.modificationAlarm.cancelAllRequests();
+            checkChangedTemplates();
+        }
         return this.modified;
     }
 
     /**
-     * Clean out the editors and other components that need to be released
+     * Clean out the editors and other components that need to be released. The panel can't be used
+     * afterwards.
      */
     public void release() {
-        EditorFactory factory = EditorFactory.getInstance();
-        for (Editor editor : this.velocityEditorMap.values()) {
-            this.tabbedPane1.remove(editor.getComponent());
-            factory.releaseEditor(editor);
+        this.modificationAlarm.cancelAllRequests();
+        this.modificationAlarm.dispose();
+        this.tabbedPane1.removeChangeListener(this.tabListener);
+        for (String templateKey : new ArrayList<String>(this.velocityEditorMap.keySet())) {
+            releaseEditor(templateKey);
+        }
+        if (this.previewPanel != null) {
+            this.previewPanel.release();
+            this.previewPanel = null;
+        }
+        for (Document document : this.templateDocuments.values()) {
+            document.removeDocumentListener(this.templateListener);
         }
+        this.templateDocuments.clear();
+        this.templateTabs.clear();
         this.velocityEditorMap.clear();
+        this.changedTemplates.clear();
     }
 }
@@ -0,0 +1,391 @@
+package org.intellij.plugins.junitgen.ui;
+
+import com.intellij.ide.util.TreeClassChooser;
+import com.intellij.ide.util.TreeClassChooserFactory;
+import com.intellij.openapi.application.ApplicationAdapter;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.fileTypes.StdFileTypes;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.util.Alarm;
+import org.intellij.plugins.junitgen.JUnitGeneratorContext;
+import org.intellij.plugins.junitgen.JUnitGeneratorModelBuilder;
+import org.intellij.plugins.junitgen.JUnitGeneratorRenderer;
+import org.intellij.plugins.junitgen.bean.JUnitGeneratorSettingsSnapshot;
+import org.intellij.plugins.junitgen.bean.TemplateEntry;
+import org.intellij.plugins.junitgen.stats.GenerationRun;
+import org.intellij.plugins.junitgen.template.CompiledTemplate;
+import org.intellij.plugins.junitgen.template.TemplateEngineManager;
+import org.intellij.plugins.junitgen.template.TemplateRequirements;
+import org.intellij.plugins.junitgen.util.JUnitGeneratorUtil;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shows what the template being edited generates for a class of the project. The preview is rendered on a
+ * pooled thread once the typing stops, and a new edit cancels a render that is still running. The result is
+ * shown with the modality of the settings dialog the panel sits in.
+ * <p>The model of the class is built once with everything a template may ask for and kept until the PSI
+ * or the settings change, so rendering a new version of the template is only a merge.</p>
+ *
+ * @author agent
+ * @since 10/17/26 7:23 PM
+ */
+public class TemplatePreviewPanel {
+
+    /**
+     * how long the typing has to stop before we render, in milliseconds
+     */
+    private static final int RENDER_DELAY = 500;
+
+    private final Project project;
+    private final JPanel component = new JPanel(new BorderLayout());
+    private final JLabel classLabel = new JLabel();
+    private final JCheckBox hotspotsCheckBox = new JCheckBox(JUnitGeneratorUtil.getProperty("junit.generator.ui.preview.hotspots"));
+    private final Document previewDocument;
+    private final Editor previewEditor;
+    private final Alarm renderAlarm = new Alarm(Alarm.ThreadToUse.POOLED_THREAD);
+    private ProgressIndicator currentRender;
+    /**
+     * the render holding a read action right now, cancelled when a write action wants to start
+     */
+    private ProgressIndicator readingRender;
+    private final ApplicationAdapter writeActionListener = new ApplicationAdapter() {
+        @Override
+        public void beforeWriteActionStart(Object action) {
+            synchronized (TemplatePreviewPanel.this) {
+                if (readingRender != null) {
+                    readingRender.cancel();
+                }
+            }
+        }
+    };
+
+    private PsiClass previewClass;
+    private String templateKey;
+    private String templateText;
+
+    /**
+     * the model of the preview class, reused until the PSI or the settings change
+     */
+    private TemplateEntry cachedEntry;
+    private PsiClass cachedClass;
+    private long cachedModificationCount = -1;
+    private long cachedSettingsVersion = -1;
+
+    public TemplatePreviewPanel(Project project) {
+        this.project = project;
+        final EditorFactory factory = EditorFactory.getInstance();
+        this.previewDocument = factory.createDocument("");
+        this.previewEditor = factory.createEditor(this.previewDocument, project, StdFileTypes.JAVA, true);
+
+        final JButton chooseButton = new JButton(JUnitGeneratorUtil.getProperty("junit.generator.ui.preview.choose"));
+        chooseButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                chooseClass();
+            }
+        });
+        //show where the template spends its time instead of what it generates
+        this.hotspotsCheckBox.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                scheduleRender(0);
+            }
+        });
+        final JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 4, 0));
+        buttons.add(this.hotspotsCheckBox);
+        buttons.add(chooseButton);
+        final JPanel header = new JPanel(new BorderLayout());
+        header.add(this.classLabel, BorderLayout.CENTER);
+        header.add(buttons, BorderLayout.EAST);
+        this.component.add(header, BorderLayout.NORTH);
+        this.component.add(this.previewEditor.getComponent(), BorderLayout.CENTER);
+        showText(JUnitGeneratorUtil.getProperty("junit.generator.ui.preview.noclass"));
+        ApplicationManager.getApplication().addApplicationListener(this.writeActionListener);
+    }
+
+    public JComponent getComponent() {
+        return component;
+    }
+
+    /**
+     * The template changed or another template is shown. The preview follows once the typing stops.
+     *
+     * @param templateKey the key of the template
+     * @param text        the text of the template
+     */
+    public void setTemplate(String templateKey, String text) {
+        this.templateKey = templateKey;
+        this.templateText = text;
+        scheduleRender(RENDER_DELAY);
+    }
+
+    /**
+     * Stop rendering and release the preview editor
+     */
+    public void release() {
+        ApplicationManager.getApplication().removeApplicationListener(this.writeActionListener);
+        cancelRender();
+        this.renderAlarm.dispose();
+        EditorFactory.getInstance().releaseEditor(this.previewEditor);
+    }
+
+    private void chooseClass() {
+        final TreeClassChooser chooser = TreeClassChooserFactory.getInstance(this.project)
+                .createAllProjectScopeChooser(JUnitGeneratorUtil.getProperty("junit.generator.ui.preview.title"));
+        chooser.showDialog();
+        final PsiClass selected = chooser.getSelectedClass();
+        if (selected != null) {
+            this.previewClass = selected;
+            this.classLabel.setText(selected.getQualifiedName());
+            scheduleRender(0);
+        }
+    }
+
+    /**
+     * Cancel whatever is pending or running and render again after the delay
+     *
+     * @param delay the delay in milliseconds
+     */
+    private void scheduleRender(int delay) {
+        cancelRender();
+        if (this.previewClass == null || this.templateText == null) {
+            return;
+        }
+        final PsiClass psiClass = this.previewClass;
+        final String key = this.templateKey;
+        final String text = this.templateText;
+        final boolean profile = this.hotspotsCheckBox.isSelected();
+        //the preview is shown while the settings dialog is up, so it has to be shown in the dialog's modality
+        final ModalityState modality = ModalityState.stateForComponent(this.component);
+        final ProgressIndicator indicator = new EmptyProgressIndicator();
+        synchronized (this) {
+            this.currentRender = indicator;
+        }
+        this.renderAlarm.addRequest(new Runnable() {
+            @Override
+            public void run() {
+                render(psiClass, key, text, profile, indicator, modality);
+            }
+        }, delay);
+    }
+
+    private void cancelRender() {
+        this.renderAlarm.cancelAllRequests();
+        synchronized (this) {
+            if (this.currentRender != null) {
+                this.currentRender.cancel();
+                this.currentRender = null;
+            }
+        }
+    }
+
+    /**
+     * Render the template against the class, runs on a pooled thread. The read action gives way to any
+     * write action, so typing in the template editor never waits for a render; the render starts over
+     * once the write action is done, unless a newer edit took over in the meantime.
+     */
+    private void render(final PsiClass psiClass, String key, String text, final boolean profile,
+                        final ProgressIndicator indicator, ModalityState modality) {
+        final CompiledTemplate template;
+        try {
+            template = TemplateEngineManager.getInstance().compileDetached(key, text);
+        } catch (Exception e) {
+            publish(String.format(JUnitGeneratorUtil.getProperty("junit.generator.error.templateparse"), key,
+                    e.getMessage()), indicator, modality);
+            return;
+        }
+        try {
+            ProgressIndicator attempt = indicator;
+            while (attempt != null) {
+                final ProgressIndicator current = attempt;
+                final String[] preview = new String[1];
+                try {
+                    ApplicationManager.getApplication().runReadAction(new Runnable() {
+                        @Override
+                        public void run() {
+                            setReadingRender(current);
+                            try {
+                                current.checkCanceled();
+                                preview[0] = merge(psiClass, template, profile, current);
+                            } finally {
+                                setReadingRender(null);
+                            }
+                        }
+                    });
+                } catch (ProcessCanceledException e) {
+                    attempt = retry(current, modality);
+                    continue;
+                }
+                publish(preview[0], current, modality);
+                return;
+            }
+        } finally {
+            TemplateEngineManager.getInstance().releaseDetached(template);
+        }
+    }
+
+    /**
+     * The render was cancelled. If that was a write action rather than a newer edit, wait for the write
+     * action and hand out a fresh indicator for the next attempt.
+     *
+     * @param cancelled the indicator of the cancelled attempt
+     * @param modality  the modality of the settings dialog, where the write actions run
+     * @return the indicator for the next attempt or null if a newer edit took over
+     */
+    private ProgressIndicator retry(ProgressIndicator cancelled, ModalityState modality) {
+        final ProgressIndicator next = new EmptyProgressIndicator();
+        synchronized (this) {
+            if (this.currentRender != cancelled) {
+                return null;
+            }
+            this.currentRender = next;
+        }
+        //the write action runs on the event thread, anything queued behind it runs once it is done
+        ApplicationManager.getApplication().invokeAndWait(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }, modality);
+        return next;
+    }
+
+    private synchronized void setReadingRender(ProgressIndicator indicator) {
+        this.readingRender = indicator;
+    }
+
+    /**
+     * Merge the template with the model of the class, building the model only when the cached one is
+     * stale. When profiling, the result is the hotspot report instead of the output. Runs in a read action.
+     */
+    private String merge(PsiClass psiClass, CompiledTemplate template, boolean profile,
+                         final ProgressIndicator indicator) {
+        if (!psiClass.isValid()) {
+            return JUnitGeneratorUtil.getProperty("junit.generator.ui.preview.noclass");
+        }
+        final PsiFile file = psiClass.getContainingFile();
+        if (!(file instanceof PsiJavaFile)) {
+            return JUnitGeneratorUtil.getProperty("junit.generator.ui.preview.noclass");
+        }
+        try {
+            final TemplateEntry entry = getEntry(psiClass, (PsiJavaFile) file, template.getKey());
+            if (entry == null) {
+                return "";
+            }
+            final List<TemplateEntry> entryList = new ArrayList<TemplateEntry>();
+            entryList.add(entry);
+            final PreviewWriter writer = new PreviewWriter(indicator);
+            final JUnitGeneratorRenderer renderer = new JUnitGeneratorRenderer(template);
+            if (profile) {
+                return renderer.profile(entryList, writer).getReport();
+            }
+            renderer.merge(entryList, writer);
+            return writer.getText();
+        } catch (ProcessCanceledException e) {
+            throw e;
+        } catch (Exception e) {
+            return e.getMessage() != null ? e.getMessage() : e.toString();
+        }
+    }
+
+    private TemplateEntry getEntry(PsiClass psiClass, PsiJavaFile file, String key) {
+        final JUnitGeneratorSettingsSnapshot settings = JUnitGeneratorUtil.getSettings(this.project);
+        final long modificationCount = PsiManager.getInstance(this.project).getModificationTracker().getModificationCount();
+        synchronized (this) {
+            if (this.cachedEntry != null && this.cachedClass == psiClass
+                    && this.cachedModificationCount == modificationCount
+                    && this.cachedSettingsVersion == settings.getVersion()) {
+                return this.cachedEntry;
+            }
+        }
+        final JUnitGeneratorContext genCtx = new JUnitGeneratorContext(this.project, file, psiClass, settings,
+                new GenerationRun(key, psiClass.getQualifiedName()));
+        //any template may be previewed with this model, so build all of it
+        final TemplateEntry entry = new JUnitGeneratorModelBuilder(TemplateRequirements.ALL).build(genCtx);
+        synchronized (this) {
+            this.cachedEntry = entry;
+            this.cachedClass = psiClass;
+            this.cachedModificationCount = modificationCount;
+            this.cachedSettingsVersion = settings.getVersion();
+        }
+        return entry;
+    }
+
+    /**
+     * Show the text unless the render was cancelled in the meantime. Runs in the modality of the settings
+     * dialog, so the preview document may be changed in a write action there.
+     */
+    private void publish(final String text, final ProgressIndicator indicator, ModalityState modality) {
+        ApplicationManager.getApplication().invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                if (!indicator.isCanceled()) {
+                    showText(text);
+                }
+            }
+        }, modality);
+    }
+
+    private void showText(final String text) {
+        ApplicationManager.getApplication().runWriteAction(new Runnable() {
+            @Override
+            public void run() {
+                previewDocument.setText(text != null ? text.replace("\r\n", "\n") : "");
+            }
+        });
+    }
+
+    /**
+     * Collects the preview and stops the merge as soon as the render is cancelled
+     */
+    private static class PreviewWriter extends Writer {
+
+        private final StringBuilder text = new StringBuilder();
+        private final ProgressIndicator indicator;
+
+        PreviewWriter(ProgressIndicator indicator) {
+            this.indicator = indicator;
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) {
+            this.indicator.checkCanceled();
+            this.text.append(chars, offset, length);
+        }
+
+        @Override
+        public void write(String str, int offset, int length) {
+            this.indicator.checkCanceled();
+            this.text.append(str, offset, offset + length);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        String getText() {
+            return this.text.toString();
+        }
+    }
+}
@@ -6,25 +6,28 @@ import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.roots.ProjectRootManager;
 import com.intellij.openapi.util.Computable;
 import com.intellij.openapi.util.IconLoader;
+import com.intellij.openapi.util.Key;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.encoding.EncodingProjectManager;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiJavaFile;
 import com.intellij.util.xmlb.XmlSerializerUtil;
 import org.intellij.plugins.junitgen.JUnitGeneratorContext;
 import org.intellij.plugins.junitgen.bean.JUnitGeneratorSettings;
+import org.intellij.plugins.junitgen.bean.JUnitGeneratorSettingsSnapshot;
 import org.intellij.plugins.junitgen.ui.JUnitGeneratorConfigurable;
 
 import javax.swing.*;
 import java.io.IOException;
+import java.nio.charset.Charset;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.ResourceBundle;
-import java.util.regex.Matcher;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
 
@@ -55,6 +58,12 @@ public class JUnitGeneratorUtil {
      */
     public static final Icon ICON = IconLoader.getIcon("/org/intellij/plugins/junitgen/logo.png");
 
+    /**
+     * bumped whenever the application or any project settings change, which makes every snapshot stale
+     */
+    private static final AtomicLong settingsVersion = new AtomicLong();
+    private static final Key<JUnitGeneratorSettingsSnapshot> SNAPSHOT_KEY = Key.create("JUnitGenerator.SettingsSnapshot");
+
 
     /**
      * Return a resource from the property bundle
@@ -153,11 +162,11 @@ public class JUnitGeneratorUtil {
     /**
      * Returns source paths for currently selected java file
      *
-     * @param clss psiClass
-     * @param ctx  the data context
+     * @param clss    psiClass
+     * @param project the project
      * @return list of source paths
      */
-    public static String getSourcePath(PsiClass clss, DataContext ctx) {
+    public static String getSourcePath(PsiClass clss, Project project) {
         if (clss == null) {
             return null;
         } else if (clss.getContainingFile() == null) {
@@ -165,18 +174,7 @@ public class JUnitGeneratorUtil {
         } else if (clss.getContainingFile().getVirtualFile() == null) {
             return null;
         }
-
-        VirtualFile[] roots = ProjectRootManager.getInstance(getProject(ctx)).getContentSourceRoots();
-        String className = clss.getContainingFile().getVirtualFile().getPath();
-
-        if (className != null) {
-            for (VirtualFile root : roots) {
-                if (className.startsWith(root.getPath())) {
-                    return root.getPath();
-                }
-            }
-        }
-        return null;
+        return SourceRootIndex.getInstance(project).getSourceRootPath(clss.getContainingFile().getVirtualFile());
     }
 
     /**
@@ -189,9 +187,9 @@ public class JUnitGeneratorUtil {
      */
     public static String resolveOutputFileName(JUnitGeneratorContext genCtx, String testClassName)
             throws IOException {
-        String outputPattern = getInstance(genCtx.getProject()).getOutputFilePattern();
-        String sourcePath = getSourcePath(genCtx.getPsiClass(), genCtx.getDataContext());
-        String projectBase = genCtx.getProject().getBaseDir().getPath();
+        final OutputPathPlan plan = genCtx.getSettings().getOutputPathPlan();
+        final String sourcePath = getSourcePath(genCtx.getPsiClass(), genCtx.getProject());
+        final String projectBase = genCtx.getProject().getBaseDir().getPath();
 
         if (sourcePath == null || projectBase == null) {
             throw new IllegalArgumentException(
@@ -199,31 +197,38 @@ public class JUnitGeneratorUtil {
                             genCtx.getPsiClass().getName()));
         }
 
-        String packageName = genCtx.getFile().getPackageName();
-
-        //make sure source path is the first part of the string
-        Matcher matcher = SOURCE_PATH_PATTERN.matcher(sourcePath);
-        if (matcher.find()) {
-            sourcePath = sourcePath.substring(matcher.start());
-        }
-
-        matcher = PROJECT_BASE_PATTERN.matcher(sourcePath);
-        if (matcher.find()) {
-            sourcePath = sourcePath.substring(matcher.start());
+        final String[] values = new String[OutputPathPlan.Token.values().length];
+        values[OutputPathPlan.Token.SOURCEPATH.ordinal()] = sourcePath;
+        if (plan.uses(OutputPathPlan.Token.TEST_SOURCEPATH)) {
+            //the module's test root, or the source root itself when the module has no test sources
+            final String testPath = SourceRootIndex.getInstance(genCtx.getProject())
+                    .getTestRootPath(genCtx.getPsiClass().getContainingFile().getVirtualFile());
+            values[OutputPathPlan.Token.TEST_SOURCEPATH.ordinal()] = testPath != null ? testPath : sourcePath;
         }
-
-        //replace our tokens with regular expressions
-        outputPattern = SOURCE_PATH_PATTERN.matcher(outputPattern).replaceAll(sourcePath);
-        outputPattern = PROJECT_BASE_PATTERN.matcher(outputPattern).replaceAll(projectBase);
-        String packageToPath = PACKAGE_NAME_PATTERN.matcher(packageName).replaceAll(PATH_PATTERN);
-        outputPattern = PACKAGE_PATTERN.matcher(outputPattern).replaceAll(packageToPath);
-        outputPattern = FILENAME_PATTERN.matcher(outputPattern).replaceAll(testClassName);
+        values[OutputPathPlan.Token.PROJECT_BASE.ordinal()] = projectBase;
+        values[OutputPathPlan.Token.PACKAGE.ordinal()] = genCtx.getFile().getPackageName().replace('.', '/');
+        values[OutputPathPlan.Token.FILENAME.ordinal()] = testClassName;
         //append the file name to the end of the file using the filetype's default extension
-        outputPattern += '.' + genCtx.getFile().getFileType().getDefaultExtension();
+        final String outputPath = plan.resolve(values) + '.' + genCtx.getFile().getFileType().getDefaultExtension();
         if (log.isDebugEnabled()) {
-            log.debug(String.format("Returning output pattern %s", outputPattern));
+            log.debug(String.format("Returning output pattern %s", outputPath));
         }
-        return outputPattern;
+        return outputPath;
+    }
+
+    /**
+     * Returns the charset generated output should be encoded with. Tests go next to the sources, so we use
+     * the charset of the file we are generating for and fall back to the project encoding.
+     *
+     * @param genCtx GeneratorContext
+     * @return the charset
+     */
+    public static Charset getOutputCharset(JUnitGeneratorContext genCtx) {
+        final VirtualFile source = genCtx.getFile().getVirtualFile();
+        if (source != null) {
+            return source.getCharset();
+        }
+        return EncodingProjectManager.getInstance(genCtx.getProject()).getDefaultCharset();
     }
 
     /**
@@ -295,6 +300,37 @@ public class JUnitGeneratorUtil {
         return settings;
     }
 
+    /**
+     * Return a snapshot of the settings that apply to the project. The snapshot is cached on the project
+     * and only taken again after the settings changed, so this is cheap enough to call from menu updates.
+     *
+     * @param project the project
+     * @return the snapshot
+     */
+    public static JUnitGeneratorSettingsSnapshot getSettings(Project project) {
+        //read the version before copying, so a change while we copy leaves the snapshot stale
+        final long version = settingsVersion.get();
+        JUnitGeneratorSettingsSnapshot snapshot = project.getUserData(SNAPSHOT_KEY);
+        if (snapshot == null || snapshot.getVersion() != version) {
+            final JUnitGeneratorSettings projectSettings = getProjectSettings(project);
+            final boolean useProjectSettings = projectSettings.isUseProjectSettings();
+            snapshot = new JUnitGeneratorSettingsSnapshot(useProjectSettings ? projectSettings : getInstance(),
+                    useProjectSettings, version);
+            project.putUserData(SNAPSHOT_KEY, snapshot);
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("Took a new settings snapshot %s", snapshot));
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Note that the application or a project's settings changed so the snapshots are taken again
+     */
+    public static void settingsChanged() {
+        settingsVersion.incrementAndGet();
+    }
+
     /**
      * Return the project settings, regardless of the configuration
      *
@@ -4,14 +4,25 @@ import com.intellij.openapi.diagnostic.Logger;
 import org.apache.velocity.runtime.RuntimeServices;
 import org.apache.velocity.runtime.log.LogChute;
 
+import java.util.concurrent.atomic.AtomicLongArray;
+
 /**
  * this class performs adaption between velocity and the logger we have wrapped
+ * <p>Velocity asks {@link #isLevelEnabled(int)} before it builds most of its trace and debug messages,
+ * so we answer with the real state of the IDEA logger. The messages that do arrive are counted per level.</p>
  *
  * @author Jon Osborn
  * @since 1/3/12 4:28 PM
  */
 public class LogAdapter implements LogChute {
 
+    private static final Logger log = JUnitGeneratorUtil.getLogger(LogAdapter.class);
+
+    /**
+     * velocity levels run from TRACE_ID (-1) to ERROR_ID (3)
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(ERROR_ID - TRACE_ID + 1);
+
     @Override
     public void init(RuntimeServices runtimeServices) throws Exception {
         //nothing to init
@@ -19,12 +30,13 @@ public class LogAdapter implements LogChute {
 
     @Override
     public void log(int i, String s) {
-        Logger log = JUnitGeneratorUtil.getLogger(LogAdapter.class);
-
+        count(i);
         switch (i) {
             case LogChute.TRACE_ID:
             case LogChute.DEBUG_ID:
-                log.debug(s);
+                if (log.isDebugEnabled()) {
+                    log.debug(s);
+                }
                 break;
             case LogChute.INFO_ID:
                 log.info(s);
@@ -42,12 +54,13 @@ public class LogAdapter implements LogChute {
 
     @Override
     public void log(int i, String s, Throwable throwable) {
-        Logger log = JUnitGeneratorUtil.getLogger(LogAdapter.class);
-
+        count(i);
         switch (i) {
             case LogChute.TRACE_ID:
             case LogChute.DEBUG_ID:
-                log.debug(s, throwable);
+                if (log.isDebugEnabled()) {
+                    log.debug(s, throwable);
+                }
                 break;
             case LogChute.INFO_ID:
                 log.info(s, throwable);
@@ -65,6 +78,31 @@ public class LogAdapter implements LogChute {
 
     @Override
     public boolean isLevelEnabled(int i) {
-        return true;
+        switch (i) {
+            case LogChute.TRACE_ID:
+            case LogChute.DEBUG_ID:
+                return log.isDebugEnabled();
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Return the number of messages velocity sent us at the level
+     *
+     * @param level one of the {@link LogChute} level ids
+     * @return the count
+     */
+    public long getMessageCount(int level) {
+        if (level < TRACE_ID || level > ERROR_ID) {
+            return 0;
+        }
+        return this.counts.get(level - TRACE_ID);
+    }
+
+    private void count(int level) {
+        if (level >= TRACE_ID && level <= ERROR_ID) {
+            this.counts.incrementAndGet(level - TRACE_ID);
+        }
     }
 }
@@ -0,0 +1,140 @@
+package org.intellij.plugins.junitgen.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The output file pattern, split once into literal text and tokens. Resolving a path is then a single
+ * pass that appends the parts, instead of a regular expression replacement per token for every class.
+ * <p>The plan is immutable and is kept with the settings snapshot it was compiled from.</p>
+ *
+ * @author agent
+ * @since 10/17/26 7:20 PM
+ */
+public final class OutputPathPlan {
+
+    /**
+     * The tokens a pattern may contain
+     */
+    public enum Token {
+        SOURCEPATH("${SOURCEPATH}"),
+        TEST_SOURCEPATH("${TEST_SOURCEPATH}"),
+        PROJECT_BASE("${PROJECT_BASE}"),
+        PACKAGE("${PACKAGE}"),
+        FILENAME("${FILENAME}");
+
+        private final String text;
+
+        Token(String text) {
+            this.text = text;
+        }
+
+        public String getText() {
+            return text;
+        }
+    }
+
+    private final String pattern;
+    /**
+     * the parts in order, each either a literal String or a Token
+     */
+    private final List<Object> parts;
+    private final int literalLength;
+
+    private OutputPathPlan(String pattern, List<Object> parts, int literalLength) {
+        this.pattern = pattern;
+        this.parts = parts;
+        this.literalLength = literalLength;
+    }
+
+    /**
+     * Split the pattern into its parts
+     *
+     * @param pattern the output file pattern from the settings
+     * @return the plan
+     */
+    public static OutputPathPlan compile(String pattern) {
+        final List<Object> parts = new ArrayList<Object>();
+        int literalLength = 0;
+        int start = 0;
+        int index = 0;
+        while (index < pattern.length()) {
+            final Token token = tokenAt(pattern, index);
+            if (token == null) {
+                index++;
+                continue;
+            }
+            if (index > start) {
+                parts.add(pattern.substring(start, index));
+                literalLength += index - start;
+            }
+            parts.add(token);
+            index += token.getText().length();
+            start = index;
+        }
+        if (start < pattern.length()) {
+            parts.add(pattern.substring(start));
+            literalLength += pattern.length() - start;
+        }
+        return new OutputPathPlan(pattern, Collections.unmodifiableList(parts), literalLength);
+    }
+
+    /**
+     * Return true if the pattern contains the token
+     *
+     * @param token the token
+     * @return true if it is used
+     */
+    public boolean uses(Token token) {
+        return this.parts.contains(token);
+    }
+
+    /**
+     * Put the path together
+     *
+     * @param values the value of each token, indexed by {@link Token#ordinal()}; unused tokens may be null
+     * @return the path
+     */
+    public String resolve(String[] values) {
+        int length = this.literalLength;
+        for (String value : values) {
+            length += value != null ? value.length() : 0;
+        }
+        final StringBuilder path = new StringBuilder(length);
+        for (Object part : this.parts) {
+            if (part instanceof Token) {
+                final String value = values[((Token) part).ordinal()];
+                if (value == null) {
+                    throw new IllegalArgumentException(String.format("There is no value for %s in the pattern '%s'",
+                            ((Token) part).getText(), this.pattern));
+                }
+                path.append(value);
+            } else {
+                path.append((String) part);
+            }
+        }
+        return path.toString();
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    private static Token tokenAt(String pattern, int index) {
+        if (pattern.charAt(index) != '$') {
+            return null;
+        }
+        for (Token token : Token.values()) {
+            if (pattern.startsWith(token.getText(), index)) {
+                return token;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "OutputPathPlan{" + parts + '}';
+    }
+}
@@ -0,0 +1,227 @@
+package org.intellij.plugins.junitgen.util;
+
+import com.intellij.ProjectTopics;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.project.ModuleAdapter;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ContentEntry;
+import com.intellij.openapi.roots.ModuleRootAdapter;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.roots.SourceFolder;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.messages.MessageBusConnection;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Finds the source root of a file through the project file index instead of scanning the content source
+ * roots. The answer is remembered per directory, since a bulk run asks for the same packages over and
+ * over, and forgotten whenever the project roots change.
+ * <p>The index also maps every production source root to the test source root of its module, so
+ * <code>${TEST_SOURCEPATH}</code> resolves to <code>src/test/java</code> for a class in
+ * <code>src/main/java</code>. The map is built on first use after a module or root change.</p>
+ *
+ * @author agent
+ * @since 10/17/26 7:20 PM
+ */
+public class SourceRootIndex {
+
+    /**
+     * marks a directory we know is not under a source root
+     */
+    private static final Object NO_ROOT = new Object();
+
+    private final Project project;
+    /**
+     * the source root of each directory we were asked about, or NO_ROOT
+     */
+    private final Map<VirtualFile, Object> roots = new ConcurrentHashMap<VirtualFile, Object>();
+    private volatile Map<VirtualFile, String> testRootPaths;
+    /**
+     * bumped on every change, so a map built while the roots changed is not kept
+     */
+    private final AtomicLong modificationCount = new AtomicLong();
+
+    public SourceRootIndex(Project project) {
+        this.project = project;
+        final MessageBusConnection connection = project.getMessageBus().connect(project);
+        connection.subscribe(ProjectTopics.PROJECT_ROOTS, new ModuleRootAdapter() {
+            @Override
+            public void rootsChanged(ModuleRootEvent event) {
+                invalidate();
+            }
+        });
+        connection.subscribe(ProjectTopics.MODULES, new ModuleAdapter() {
+            @Override
+            public void moduleAdded(Project project, Module module) {
+                invalidate();
+            }
+
+            @Override
+            public void moduleRemoved(Project project, Module module) {
+                invalidate();
+            }
+        });
+    }
+
+    /**
+     * Return the instance for the project
+     *
+     * @param project the project
+     * @return the index
+     */
+    public static SourceRootIndex getInstance(Project project) {
+        return ServiceManager.getService(project, SourceRootIndex.class);
+    }
+
+    /**
+     * The path of the source root the file is in. Must be called inside a read action.
+     *
+     * @param file the file
+     * @return the path of the root or null if the file isn't under a source root
+     */
+    public String getSourceRootPath(VirtualFile file) {
+        final VirtualFile root = getSourceRoot(file);
+        return root != null ? root.getPath() : null;
+    }
+
+    /**
+     * The path of the test source root that belongs with the file's source root. Must be called inside a
+     * read action.
+     *
+     * @param file the file
+     * @return the path of the test root, or null if the module of the file has no test sources
+     */
+    public String getTestRootPath(VirtualFile file) {
+        final VirtualFile root = getSourceRoot(file);
+        if (root == null) {
+            return null;
+        }
+        Map<VirtualFile, String> testRoots = this.testRootPaths;
+        if (testRoots == null) {
+            final long count = this.modificationCount.get();
+            testRoots = buildTestRootPaths();
+            if (this.modificationCount.get() == count) {
+                this.testRootPaths = testRoots;
+            }
+        }
+        return testRoots.get(root);
+    }
+
+    /**
+     * Forget everything, the roots changed
+     */
+    public void invalidate() {
+        this.modificationCount.incrementAndGet();
+        this.roots.clear();
+        this.testRootPaths = null;
+    }
+
+    private VirtualFile getSourceRoot(VirtualFile file) {
+        final VirtualFile directory = file.isDirectory() ? file : file.getParent();
+        if (directory == null) {
+            return null;
+        }
+        Object root = this.roots.get(directory);
+        if (root == null) {
+            final ProjectFileIndex fileIndex = ProjectRootManager.getInstance(this.project).getFileIndex();
+            root = fileIndex.isInSourceContent(directory) ? fileIndex.getSourceRootForFile(directory) : null;
+            if (root == null) {
+                root = NO_ROOT;
+            }
+            this.roots.put(directory, root);
+        }
+        return root == NO_ROOT ? null : (VirtualFile) root;
+    }
+
+    /**
+     * Pair up the production and test source roots of every module. The file index tells them apart,
+     * which works with every version of the platform the plugin supports.
+     *
+     * @return the test root path by production root
+     */
+    private Map<VirtualFile, String> buildTestRootPaths() {
+        final ProjectFileIndex fileIndex = ProjectRootManager.getInstance(this.project).getFileIndex();
+        final Map<VirtualFile, String> testRoots = new HashMap<VirtualFile, String>();
+        for (Module module : ModuleManager.getInstance(this.project).getModules()) {
+            //the production roots with the path of the content root they are in
+            final Map<VirtualFile, String> productionRoots = new LinkedHashMap<VirtualFile, String>();
+            final List<String> moduleTestRoots = new ArrayList<String>();
+            for (ContentEntry contentEntry : ModuleRootManager.getInstance(module).getContentEntries()) {
+                final VirtualFile contentRoot = contentEntry.getFile();
+                for (SourceFolder sourceFolder : contentEntry.getSourceFolders()) {
+                    final VirtualFile root = sourceFolder.getFile();
+                    if (root == null) {
+                        continue;
+                    }
+                    if (fileIndex.isInTestSourceContent(root)) {
+                        moduleTestRoots.add(root.getPath());
+                    } else if (fileIndex.isInSourceContent(root)) {
+                        productionRoots.put(root, contentRoot != null ? contentRoot.getPath() : null);
+                    }
+                }
+            }
+            if (moduleTestRoots.isEmpty()) {
+                continue;
+            }
+            for (Map.Entry<VirtualFile, String> productionRoot : productionRoots.entrySet()) {
+                testRoots.put(productionRoot.getKey(),
+                        pairTestRoot(productionRoot.getValue(), productionRoot.getKey().getPath(), moduleTestRoots));
+            }
+        }
+        return testRoots;
+    }
+
+    /**
+     * Pick the test root for a production root. The test root at the same place with the first
+     * <code>main</code> below the content root swapped for <code>test</code> (the maven layout) wins,
+     * otherwise the first test root of the module is taken.
+     *
+     * @param contentRootPath    the path of the content root the production root is in, may be null
+     * @param productionRootPath the path of the production root
+     * @param testRootPaths      the paths of the test roots of the module, not empty
+     * @return the path of the test root
+     */
+    public static String pairTestRoot(String contentRootPath, String productionRootPath, List<String> testRootPaths) {
+        final String mirrored = mirror(contentRootPath, productionRootPath);
+        if (mirrored != null && testRootPaths.contains(mirrored)) {
+            return mirrored;
+        }
+        return testRootPaths.get(0);
+    }
+
+    /**
+     * Swap the first <code>main</code> segment below the content root for <code>test</code>. Only the part
+     * below the content root is looked at, a <code>main</code> further up the path belongs to someone else.
+     *
+     * @return the mirrored path or null if there is nothing to swap
+     */
+    private static String mirror(String contentRootPath, String productionRootPath) {
+        if (contentRootPath == null || !productionRootPath.startsWith(contentRootPath + '/')) {
+            return null;
+        }
+        final String[] segments = productionRootPath.substring(contentRootPath.length() + 1).split("/");
+        for (int i = 0; i < segments.length; i++) {
+            if ("main".equals(segments[i])) {
+                segments[i] = "test";
+                final StringBuilder sb = new StringBuilder(contentRootPath);
+                for (String segment : segments) {
+                    sb.append('/').append(segment);
+                }
+                return sb.toString();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,151 @@
+package org.intellij.plugins.junitgen.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * String helpers for the template, available as <code>$strings</code>. They replace macros such as
+ * <code>#cap</code>, which velocity interprets on every call, with plain Java. The same names come up
+ * over and over (every getter, every overload), so the results are remembered.
+ *
+ * @author agent
+ * @since 10/17/26 7:32 PM
+ */
+public class StringTool {
+
+    /**
+     * we stop remembering more than this many results per operation, names rarely repeat beyond that
+     */
+    private static final int MAX_CACHED = 4096;
+
+    private final Map<String, String> capitalized = new ConcurrentHashMap<String, String>();
+    private final Map<String, String> uncapitalized = new ConcurrentHashMap<String, String>();
+    private final Map<String, String> camelCased = new ConcurrentHashMap<String, String>();
+    private final Map<String, String> constantCased = new ConcurrentHashMap<String, String>();
+
+    /**
+     * Upper case the first letter: <code>fooBar</code> becomes <code>FooBar</code>
+     *
+     * @param str the string
+     * @return the capitalized string, null if the string was null
+     */
+    public String cap(String str) {
+        if (str == null || str.length() == 0 || Character.isUpperCase(str.charAt(0))) {
+            return str;
+        }
+        String result = this.capitalized.get(str);
+        if (result == null) {
+            result = Character.toUpperCase(str.charAt(0)) + str.substring(1);
+            remember(this.capitalized, str, result);
+        }
+        return result;
+    }
+
+    /**
+     * Lower case the first letter: <code>FooBar</code> becomes <code>fooBar</code>
+     *
+     * @param str the string
+     * @return the uncapitalized string, null if the string was null
+     */
+    public String uncap(String str) {
+        if (str == null || str.length() == 0 || Character.isLowerCase(str.charAt(0))) {
+            return str;
+        }
+        String result = this.uncapitalized.get(str);
+        if (result == null) {
+            result = Character.toLowerCase(str.charAt(0)) + str.substring(1);
+            remember(this.uncapitalized, str, result);
+        }
+        return result;
+    }
+
+    /**
+     * Join the words of the string in camel case: <code>foo_bar baz</code> and <code>FOO_BAR_BAZ</code>
+     * become <code>fooBarBaz</code>. Anything that is not a letter or digit separates words.
+     *
+     * @param str the string
+     * @return the camel cased string, null if the string was null
+     */
+    public String camelCase(String str) {
+        if (str == null) {
+            return null;
+        }
+        String result = this.camelCased.get(str);
+        if (result == null) {
+            final boolean allUpperCase = str.equals(str.toUpperCase());
+            final StringBuilder sb = new StringBuilder(str.length());
+            boolean newWord = false;
+            for (int i = 0; i < str.length(); i++) {
+                char c = str.charAt(i);
+                if (!Character.isLetterOrDigit(c)) {
+                    newWord = sb.length() > 0;
+                    continue;
+                }
+                if (allUpperCase) {
+                    c = Character.toLowerCase(c);
+                }
+                if (sb.length() == 0) {
+                    sb.append(Character.toLowerCase(c));
+                } else {
+                    sb.append(newWord ? Character.toUpperCase(c) : c);
+                }
+                newWord = false;
+            }
+            result = sb.toString();
+            remember(this.camelCased, str, result);
+        }
+        return result;
+    }
+
+    /**
+     * The camel cased string with its first letter upper cased: <code>foo_bar</code> becomes
+     * <code>FooBar</code>
+     *
+     * @param str the string
+     * @return the string, null if the string was null
+     */
+    public String pascalCase(String str) {
+        return cap(camelCase(str));
+    }
+
+    /**
+     * Split a camel cased string into upper case words: <code>fooBarBaz</code> becomes
+     * <code>FOO_BAR_BAZ</code>
+     *
+     * @param str the string
+     * @return the constant name, null if the string was null
+     */
+    public String constantCase(String str) {
+        if (str == null) {
+            return null;
+        }
+        String result = this.constantCased.get(str);
+        if (result == null) {
+            final StringBuilder sb = new StringBuilder(str.length() + 8);
+            for (int i = 0; i < str.length(); i++) {
+                final char c = str.charAt(i);
+                if (!Character.isLetterOrDigit(c)) {
+                    if (sb.length() > 0 && sb.charAt(sb.length() - 1) != '_') {
+                        sb.append('_');
+                    }
+                    continue;
+                }
+                if (Character.isUpperCase(c) && i > 0 && Character.isLowerCase(str.charAt(i - 1))
+                        && sb.charAt(sb.length() - 1) != '_') {
+                    sb.append('_');
+                }
+                sb.append(Character.toUpperCase(c));
+            }
+            result = sb.toString();
+            remember(this.constantCased, str, result);
+        }
+        return result;
+    }
+
+    private static void remember(Map<String, String> cache, String str, String result) {
+        if (cache.size() >= MAX_CACHED) {
+            cache.clear();
+        }
+        cache.put(str, result);
+    }
+}
@@ -0,0 +1,61 @@
+package org.intellij.plugins.junitgen;
+
+import org.intellij.plugins.junitgen.util.OutputPathPlan;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test the compiled output path pattern
+ *
+ * @author agent
+ * @since 10/17/26 7:20 PM
+ */
+public class OutputPathPlanTest {
+
+    private static String[] values(String sourcePath, String projectBase, String packagePath, String fileName) {
+        final String[] values = new String[OutputPathPlan.Token.values().length];
+        values[OutputPathPlan.Token.SOURCEPATH.ordinal()] = sourcePath;
+        values[OutputPathPlan.Token.PROJECT_BASE.ordinal()] = projectBase;
+        values[OutputPathPlan.Token.PACKAGE.ordinal()] = packagePath;
+        values[OutputPathPlan.Token.FILENAME.ordinal()] = fileName;
+        return values;
+    }
+
+    @Test
+    public void testDefaultPattern() {
+        final OutputPathPlan plan = OutputPathPlan.compile("${SOURCEPATH}/test/${PACKAGE}/${FILENAME}");
+        assertEquals("/src/test/my/pkg/FooTest", plan.resolve(values("/src", "/base", "my/pkg", "FooTest")));
+        assertTrue(plan.uses(OutputPathPlan.Token.SOURCEPATH));
+        assertFalse(plan.uses(OutputPathPlan.Token.PROJECT_BASE));
+    }
+
+    @Test
+    public void testReplacementCharactersAreLiteral() {
+        final OutputPathPlan plan = OutputPathPlan.compile("${PROJECT_BASE}/${FILENAME}");
+        assertEquals("C:\\my$base/FooTest", plan.resolve(values(null, "C:\\my$base", null, "FooTest")));
+    }
+
+    @Test
+    public void testUnknownTokensStayText() {
+        final OutputPathPlan plan = OutputPathPlan.compile("$HOME/${OTHER}/${FILENAME}$");
+        assertEquals("$HOME/${OTHER}/FooTest$", plan.resolve(values(null, null, null, "FooTest")));
+    }
+
+    @Test
+    public void testTestSourcePath() {
+        final OutputPathPlan plan = OutputPathPlan.compile("${TEST_SOURCEPATH}/${PACKAGE}/${FILENAME}");
+        final String[] values = values("/m/src/main/java", "/base", "my/pkg", "FooTest");
+        values[OutputPathPlan.Token.TEST_SOURCEPATH.ordinal()] = "/m/src/test/java";
+        assertEquals("/m/src/test/java/my/pkg/FooTest", plan.resolve(values));
+        assertTrue(plan.uses(OutputPathPlan.Token.TEST_SOURCEPATH));
+        assertFalse(plan.uses(OutputPathPlan.Token.SOURCEPATH));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingValue() {
+        OutputPathPlan.compile("${SOURCEPATH}/${FILENAME}").resolve(values(null, null, null, "FooTest"));
+    }
+}
@@ -0,0 +1,64 @@
+package org.intellij.plugins.junitgen;
+
+import org.intellij.plugins.junitgen.output.OutputSink;
+import org.intellij.plugins.junitgen.output.OutputSplitter;
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test cutting the output of a merge over several classes into tests
+ *
+ * @author agent
+ * @since 10/17/26 7:34 PM
+ */
+public class OutputSplitterTest {
+
+    @Test
+    public void testSplit() throws Exception {
+        final OutputSplitter splitter = new OutputSplitter(Arrays.asList(Charset.forName("UTF-8"),
+                Charset.forName("ISO-8859-1")));
+        splitter.write("\n");
+        splitter.write(splitter.begin("FooTest"));
+        splitter.write("class FooTest {}\n");
+        splitter.write(splitter.begin("BarTest"));
+        splitter.write("class B\u00e4rTest {}\n");
+        assertEquals(2, splitter.getSegmentCount());
+        assertEquals("FooTest", splitter.getName(0));
+        assertEquals("BarTest", splitter.getName(1));
+        //what comes before the first mark goes with the first test
+        assertText("\nclass FooTest {}\n", 18, splitter.takeOutput(0));
+        //and each test is encoded with its own charset
+        assertText("class B\u00e4rTest {}\n", 17, splitter.takeOutput(1));
+    }
+
+    @Test
+    public void testTooManyMarks() throws Exception {
+        final OutputSplitter splitter = new OutputSplitter(Arrays.asList(Charset.forName("UTF-8")));
+        splitter.write(splitter.begin("FooTest"));
+        splitter.write("class FooTest {}\n");
+        splitter.write(splitter.begin("BarTest"));
+        splitter.write("class BarTest {}\n");
+        assertEquals(2, splitter.getSegmentCount());
+        assertText("class FooTest {}\n", 17, splitter.takeOutput(0));
+        splitter.release();
+    }
+
+    @Test
+    public void testIgnored() throws Exception {
+        assertEquals("", OutputSplitter.IGNORED.begin("FooTest"));
+        assertEquals(0, OutputSplitter.IGNORED.getSegmentCount());
+    }
+
+    private static void assertText(String expected, int size, OutputSink output) throws Exception {
+        try {
+            assertEquals(expected, output.getText());
+            assertEquals(size, output.size());
+        } finally {
+            output.release();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package org.intellij.plugins.junitgen;
+
+import org.intellij.plugins.junitgen.util.SourceRootIndex;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test pairing production source roots with test source roots
+ *
+ * @author agent
+ * @since 10/17/26 7:45 PM
+ */
+public class SourceRootIndexTest {
+
+    @Test
+    public void testMavenMirror() {
+        assertEquals("/m/src/test/java", SourceRootIndex.pairTestRoot("/m", "/m/src/main/java",
+                Arrays.asList("/m/src/it/java", "/m/src/test/java")));
+    }
+
+    @Test
+    public void testMainAboveTheContentRootIsLeftAlone() {
+        assertEquals("/home/main/proj/src/test/java", SourceRootIndex.pairTestRoot("/home/main/proj",
+                "/home/main/proj/src/main/java",
+                Arrays.asList("/home/main/proj/other", "/home/main/proj/src/test/java")));
+    }
+
+    @Test
+    public void testFallbackToTheFirstTestRoot() {
+        assertEquals("/m/tests", SourceRootIndex.pairTestRoot("/m", "/m/src",
+                Arrays.asList("/m/tests", "/m/more-tests")));
+    }
+
+    @Test
+    public void testFallbackWithoutContentRoot() {
+        assertEquals("/m/tests", SourceRootIndex.pairTestRoot(null, "/m/src/main/java",
+                Arrays.asList("/m/tests", "/m/src/test/java")));
+    }
+
+    @Test
+    public void testOnlyTheFirstMainIsSwapped() {
+        assertEquals("/m/src/test/main", SourceRootIndex.pairTestRoot("/m", "/m/src/main/main",
+                Arrays.asList("/m/src/test/test", "/m/src/test/main")));
+    }
+}
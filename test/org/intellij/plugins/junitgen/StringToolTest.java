@@ -0,0 +1,50 @@
+package org.intellij.plugins.junitgen;
+
+import org.intellij.plugins.junitgen.util.StringTool;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Test the string helpers of the template
+ *
+ * @author agent
+ * @since 10/17/26 7:32 PM
+ */
+public class StringToolTest {
+
+    private final StringTool strings = new StringTool();
+
+    @Test
+    public void testCap() {
+        assertEquals("GetFoo", strings.cap("getFoo"));
+        assertEquals("GetFoo", strings.cap("GetFoo"));
+        assertEquals("", strings.cap(""));
+        assertNull(strings.cap(null));
+        //the second time comes from the cache
+        assertEquals("GetFoo", strings.cap("getFoo"));
+    }
+
+    @Test
+    public void testUncap() {
+        assertEquals("fooBar", strings.uncap("FooBar"));
+        assertEquals("fooBar", strings.uncap("fooBar"));
+        assertNull(strings.uncap(null));
+    }
+
+    @Test
+    public void testCamelCase() {
+        assertEquals("fooBarBaz", strings.camelCase("foo_bar baz"));
+        assertEquals("fooBarBaz", strings.camelCase("FOO_BAR_BAZ"));
+        assertEquals("getFoo", strings.camelCase("getFoo"));
+        assertEquals("GetFoo", strings.pascalCase("get_foo"));
+    }
+
+    @Test
+    public void testConstantCase() {
+        assertEquals("FOO_BAR_BAZ", strings.constantCase("fooBarBaz"));
+        assertEquals("GET_URL", strings.constantCase("getURL"));
+        assertEquals("FOO_BAR", strings.constantCase("foo bar"));
+    }
+}
@@ -0,0 +1,160 @@
+package org.intellij.plugins.junitgen;
+
+import org.apache.velocity.VelocityContext;
+import org.intellij.plugins.junitgen.bean.MethodComposite;
+import org.intellij.plugins.junitgen.bean.TemplateEntry;
+import org.intellij.plugins.junitgen.output.OutputSplitter;
+import org.intellij.plugins.junitgen.template.CompiledRenderer;
+import org.intellij.plugins.junitgen.template.CompiledTemplate;
+import org.intellij.plugins.junitgen.template.TemplateEngineManager;
+import org.intellij.plugins.junitgen.util.DateTool;
+import org.intellij.plugins.junitgen.util.StringTool;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.ResourceBundle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Test that a template compiled to Java renders exactly what velocity renders when it interprets the
+ * same template with the same model
+ *
+ * @author agent
+ * @since 10/17/26 7:50 PM
+ */
+public class TemplateCompilerTest {
+
+    private TemplateEngineManager manager;
+
+    @Before
+    public void setUp() {
+        this.manager = new TemplateEngineManager();
+    }
+
+    @Test
+    public void testBundledTemplates() throws Exception {
+        final ResourceBundle bundle = ResourceBundle.getBundle("vm-template");
+        assertSame("junit.generator.vm.1", bundle.getString("junit.generator.vm.1"));
+        assertSame("junit.generator.vm.2", bundle.getString("junit.generator.vm.2"));
+    }
+
+    @Test
+    public void testCapMacro() throws Exception {
+        assertSame("cap",
+                "#macro (cap $strIn)$strIn.valueOf($strIn.charAt(0)).toUpperCase()$strIn.substring(1)#end\n" +
+                "#foreach ($entry in $entryList)\n" +
+                "#foreach ($method in $entry.methodList)\n" +
+                "    public void test#cap(${method.name})() throws Exception {\n" +
+                "    }\n" +
+                "#end\n" +
+                "#end\n");
+    }
+
+    @Test
+    public void testMacroArgumentsArePassedByName() throws Exception {
+        assertSame("byName",
+                "#macro (twice $a)$a/$!a/${a}/$a.length()#end\n" +
+                "#macro (outer $b)#twice($b)#end\n" +
+                "#set ($n = \"1\")\n" +
+                "#twice($n) #twice(\"x\") #twice(\"x$n\") #twice($entryList.get(1).className)\n" +
+                "#twice($missing) #twice($entryList.get(0).missing) #twice($!missing) #twice(${missing})\n" +
+                "#outer($missing) #outer($n)|\n");
+    }
+
+    @Test
+    public void testNullReferences() throws Exception {
+        assertSame("nulls",
+                "[$missing] [$!missing] [${missing}] [$!{missing}]\n" +
+                "[$missing.name] [$!missing.name] [$entryList.get(0).missing]\n" +
+                "[$entryList.get(0).methodList.get(1).signature] [$!entryList.get(0).methodList.get(1).signature]\n");
+    }
+
+    @Test
+    public void testNestedForeach() throws Exception {
+        assertSame("foreach",
+                "#set ($velocityCount = \"outside\")\n" +
+                "#foreach ($entry in $entryList)\n" +
+                "$velocityCount:$entry.className $velocityHasNext\n" +
+                "#foreach ($method in $entry.methodList)\n" +
+                "  $velocityCount:$method.name#if ($velocityHasNext),#end\n" +
+                "#end\n" +
+                "after $velocityCount $method\n" +
+                "#end\n" +
+                "$velocityCount $entry\n");
+    }
+
+    @Test
+    public void testSetNull() throws Exception {
+        assertSame("setNull",
+                "#set ($a = \"before\")\n" +
+                "#set ($a = $missing)\n" +
+                "$a\n" +
+                "#set ($b = $entryList.get(0).methodList.get(1).signature)\n" +
+                "$b $!b\n" +
+                "#foreach ($method in $entryList.get(0).methodList)\n" +
+                "#set ($sig = $method.signature)\n" +
+                "$sig\n" +
+                "#end\n");
+    }
+
+    @Test
+    public void testConditions() throws Exception {
+        assertSame("conditions",
+                "#foreach ($entry in $entryList)\n" +
+                "#if ($entry.fieldList)list#end #if ($entry.packageName == \"\")default#else$entry.packageName#end\n" +
+                "#if ($entry.methodList.size() > 1 && !$missing)many#elseif ($entry.methodList.size() == 1)one#end\n" +
+                "#if ($entry.methodList.size() == \"2\")coerced#end #if ($missing == $missing)same#end\n" +
+                "#end\n");
+    }
+
+    private void assertSame(String key, String content) throws Exception {
+        final CompiledTemplate template = this.manager.compile(key, content);
+        final CompiledRenderer renderer = template.getRenderer();
+        assertNotNull(String.format("template '%s' was not compiled", key), renderer);
+
+        final StringWriter interpreted = new StringWriter();
+        template.getTemplate().merge(createContext(), interpreted);
+        final StringWriter compiled = new StringWriter();
+        renderer.render(createContext(), compiled);
+        assertEquals(interpreted.toString(), compiled.toString());
+    }
+
+    private static VelocityContext createContext() {
+        final VelocityContext context = new VelocityContext();
+        context.put("entryList", Arrays.asList(
+                new TemplateEntry("Foo", "org.example",
+                        Arrays.asList(method("getName", "getName()", "Foo"),
+                                method("setName", null, "Foo"),
+                                method("setName", "setName(String name, int i)", "Foo")),
+                        Collections.singletonList(method("helper", "helper()", "Foo")), null),
+                new TemplateEntry("Bar", "", Collections.singletonList(method("run", "run()", "Bar")),
+                        Collections.<MethodComposite>emptyList(), null)));
+        context.put("today", "10/17/2026");
+        context.put("date", new DateTool());
+        context.put("strings", new StringTool());
+        context.put("boundary", OutputSplitter.IGNORED);
+        return context;
+    }
+
+    private static MethodComposite method(String name, String signature, String className) {
+        final MethodComposite method = new MethodComposite();
+        method.setName(name);
+        method.setSignature(signature);
+        method.setReflectionClassName(className);
+        method.setParamClasses(new ArrayList<String>());
+        method.setParamNames(new ArrayList<String>());
+        final List<String> reflectionCode = new ArrayList<String>();
+        reflectionCode.add("/*");
+        reflectionCode.add("   Method method = " + className + ".getClass().getMethod(\"" + name + "\");");
+        reflectionCode.add("*/");
+        method.setReflectionCode(reflectionCode);
+        return method;
+    }
+}